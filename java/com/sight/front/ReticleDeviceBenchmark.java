@@ -0,0 +1,183 @@
+package com.sight.front;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.os.Build;
+import android.os.Debug;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 设备端热路径基准测试 - 测量依赖 org.json / android.* 的配置路径与完整绘制例程的耗时与分配
+ * 用例：config.fromJson / config.toJson、type.isSupported、getConfigMetadata（缓存命中）与 getConfigMetadata.build（重新生成），
+ * 以及每种准星的 draw.<type>（ReticlePainter.drawReticle 录制到 Picture，只测量绘制调用本身，不含光栅化）
+ * 纯几何部分（指令生成与回放）可在普通 JVM 上用 ReticleGeometryBenchmark 测量
+ *
+ * 不随悬浮窗 API 暴露，在 com.sight.front 包内的 instrumentation 测试或调试代码中调用：
+ *   String result = ReticleDeviceBenchmark.run(density, 20000).toString();
+ * 耗时较长，需在后台线程调用
+ */
+final class ReticleDeviceBenchmark {
+    private static final int WARMUP_DIVISOR = 4;     // 预热次数为测量次数的 1/4
+    private static final int RECORDING_BATCH = 256;  // 每段录制的绘制次数，避免录制内容无限增长
+    private static final String ALLOC_STAT = "art.gc.bytes-allocated";
+
+    // custom 类型的示例图形：十字加一段圆弧和一个点
+    private static final String SAMPLE_SHAPES = "[{\"kind\":\"line\",\"x1\":-1,\"y1\":0,\"x2\":-0.4,\"y2\":0},"
+            + "{\"kind\":\"line\",\"x1\":0.4,\"y1\":0,\"x2\":1,\"y2\":0},"
+            + "{\"kind\":\"arc\",\"cx\":0,\"cy\":0,\"r\":0.6,\"start\":200,\"sweep\":140},"
+            + "{\"kind\":\"dot\",\"cx\":0,\"cy\":0.8,\"r\":0.08}]";
+
+    /**
+     * 被测操作
+     */
+    private interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    private final float density;
+    private final int iterations;
+
+    private ReticleDeviceBenchmark(float density, int iterations) {
+        this.density = density;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    /**
+     * 运行全部用例
+     * @param density 屏幕密度，通常取 getResources().getDisplayMetrics().density
+     * @param iterations 每个用例的测量次数（另有 1/4 的预热）
+     * @return 每个用例的 nsPerOp 与 bytesPerOp（设备不支持分配统计时为 -1）
+     */
+    static JSONObject run(float density, int iterations) throws Exception {
+        return new ReticleDeviceBenchmark(density, iterations).runAll();
+    }
+
+    private JSONObject runAll() throws Exception {
+        JSONObject results = new JSONObject();
+
+        final SightOverlayConfig config = SightDefaults.createDefaultConfig();
+        final JSONObject json = config.toJson();
+        final String[] types = SightType.getSupportedTypes();
+
+        results.put("config.fromJson", measure(new Operation() {
+            @Override
+            public void run(int iteration) {
+                SightOverlayConfig.fromJson(json);
+            }
+        }));
+        results.put("config.toJson", measure(new Operation() {
+            @Override
+            public void run(int iteration) throws JSONException {
+                config.toJson();
+            }
+        }));
+        results.put("type.isSupported", measure(new Operation() {
+            @Override
+            public void run(int iteration) {
+                SightType.isSupported(types[iteration % types.length]);
+            }
+        }));
+        results.put("getConfigMetadata", measure(new Operation() {
+            @Override
+            public void run(int iteration) {
+                sight_overlay.getConfigMetadata();
+            }
+        }));
+        results.put("getConfigMetadata.build", measure(new Operation() {
+            @Override
+            public void run(int iteration) {
+                SightMetadata.buildConfigMetadata();
+            }
+        }));
+
+        ReticleShapeList sampleShapes = ReticleShapeList.fromJson(new JSONArray(SAMPLE_SHAPES));
+        for (String type : types) {
+            SightOverlayConfig typeConfig = new SightOverlayConfig(type, config.color, config.size,
+                    config.thickness, config.showDot, config.opacity);
+            if (typeConfig.getTypeId() == SightType.ID_CUSTOM) {
+                typeConfig.shapes = sampleShapes;
+            }
+            results.put("draw." + type, measureDraw(new SightRenderState(typeConfig, density)));
+        }
+        return results;
+    }
+
+    /**
+     * 测量单个准星类型的完整绘制例程（与 OverlayView 使用相同的画笔设置）
+     */
+    private JSONObject measureDraw(final SightRenderState state) throws Exception {
+        final Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setColor(state.color);
+        paint.setStrokeWidth(state.strokeWidth);
+        final Paint dotPaint = new Paint();
+        dotPaint.setAntiAlias(true);
+        dotPaint.setStyle(Paint.Style.FILL);
+        dotPaint.setColor(state.color);
+
+        final int extent = ReticleGeometry.windowSide(state.boundsRadius);
+        final float half = extent / 2f;
+        final Picture picture = new Picture();
+        final Canvas[] canvas = new Canvas[1];
+        final ReticleDrawScratch scratch = new ReticleDrawScratch();
+
+        JSONObject result = measure(new Operation() {
+            @Override
+            public void run(int iteration) {
+                if (iteration % RECORDING_BATCH == 0) {
+                    if (canvas[0] != null) {
+                        picture.endRecording();
+                    }
+                    canvas[0] = picture.beginRecording(extent, extent);
+                    canvas[0].translate(half, half);
+                }
+                ReticlePainter.drawReticle(canvas[0], state, paint, dotPaint, scratch, half, half);
+            }
+        });
+        picture.endRecording();
+        return result;
+    }
+
+    private JSONObject measure(Operation operation) throws Exception {
+        int warmup = Math.max(1, iterations / WARMUP_DIVISOR);
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocEnd = allocatedBytes();
+
+        JSONObject result = new JSONObject();
+        result.put("nsPerOp", elapsed / iterations);
+        result.put("bytesPerOp", allocStart < 0 || allocEnd < 0 ? -1 : (allocEnd - allocStart) / iterations);
+        return result;
+    }
+
+    /**
+     * 进程累计分配字节数（Android 6.0+ 的 ART 运行时统计），不支持时返回 -1
+     * 统计为进程级，测量期间其他线程的分配也会计入
+     */
+    private static long allocatedBytes() {
+        if (Build.VERSION.SDK_INT < 23) {
+            return -1;
+        }
+        String value = Debug.getRuntimeStat(ALLOC_STAT);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
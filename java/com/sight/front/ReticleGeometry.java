@@ -0,0 +1,353 @@
+package com.sight.front;
+
+import java.util.Arrays;
+
+/**
+ * 准星几何引擎 - 纯 Java 实现，不依赖 android.graphics
+ * 按准星参数生成图元指令数组，可在任意线程计算与缓存，也可在普通 JVM 上测试和基准测量
+ * 所有坐标均相对于准星中心点（px）
+ *
+ * 指令数组由若干条指令顺序拼接，每条指令为 [操作码, 参数个数 n, 参数 × n]
+ */
+final class ReticleGeometry {
+    // 操作码
+    public static final int OP_LINES = 0;          // 线段组：每 4 个参数为一条线段 x1, y1, x2, y2（描边画笔）
+    public static final int OP_STROKE_CIRCLE = 1;  // 空心圆：cx, cy, r（描边画笔）
+    public static final int OP_FILL_CIRCLE = 2;    // 实心圆：cx, cy, r（中心点画笔）
+    public static final int OP_DASHED_CIRCLE = 3;  // 虚线圆：cx, cy, r, dash, gap（描边画笔）
+    public static final int OP_POLYLINE = 4;       // 折线：每 2 个参数为一个顶点，相邻顶点相连（描边画笔，转角为圆角连接）
+    public static final int OP_EDGE_CROSS = 5;     // 从中心延伸到窗口四边的十字，无参数，窗口尺寸在回放时确定
+
+    // 内置准星类型名（与 SightType 保持一致）
+    public static final String CROSS = "cross";
+    public static final String DOT = "dot";
+    public static final String TACTICAL = "tactical";
+    public static final String CIRCLE = "circle";
+    public static final String BRACKET = "bracket";
+    public static final String CHEVRON = "chevron";
+    public static final String QUADRANT = "quadrant";
+
+    public static final float ANTIALIAS_MARGIN = 2; // 窗口在绘制范围外额外留出的抗锯齿余量（px）
+
+    /**
+     * 一组图元指令及其几何范围
+     */
+    static final class Commands {
+        public final float[] data;
+        public final float extent; // 相对中心的最大坐标（px，不含线宽）
+
+        Commands(float[] data, float extent) {
+            this.data = data;
+            this.extent = extent;
+        }
+
+        /**
+         * 指令条数
+         */
+        public int count() {
+            int count = 0;
+            for (int i = 0; i < data.length; i += 2 + (int) data[i + 1]) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 指令构建器
+     */
+    static final class Builder {
+        private float[] data = new float[32];
+        private int length;
+        private float extent;
+
+        public Builder lines(float... points) {
+            append(OP_LINES, points);
+            for (float point : points) {
+                extent = Math.max(extent, Math.abs(point));
+            }
+            return this;
+        }
+
+        public Builder strokeCircle(float cx, float cy, float r) {
+            append(OP_STROKE_CIRCLE, cx, cy, r);
+            extent = Math.max(extent, Math.max(Math.abs(cx), Math.abs(cy)) + r);
+            return this;
+        }
+
+        public Builder fillCircle(float cx, float cy, float r) {
+            append(OP_FILL_CIRCLE, cx, cy, r);
+            extent = Math.max(extent, Math.max(Math.abs(cx), Math.abs(cy)) + r);
+            return this;
+        }
+
+        public Builder dashedCircle(float cx, float cy, float r, float dash, float gap) {
+            append(OP_DASHED_CIRCLE, cx, cy, r, dash, gap);
+            extent = Math.max(extent, Math.max(Math.abs(cx), Math.abs(cy)) + r);
+            return this;
+        }
+
+        public Builder polyline(float... points) {
+            append(OP_POLYLINE, points);
+            for (float point : points) {
+                extent = Math.max(extent, Math.abs(point));
+            }
+            return this;
+        }
+
+        /**
+         * @param extent 不依赖窗口尺寸部分的几何范围
+         */
+        public Builder edgeCross(float extent) {
+            append(OP_EDGE_CROSS);
+            this.extent = Math.max(this.extent, extent);
+            return this;
+        }
+
+        private void append(int op, float... args) {
+            int required = length + 2 + args.length;
+            if (required > data.length) {
+                data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+            }
+            data[length++] = op;
+            data[length++] = args.length;
+            System.arraycopy(args, 0, data, length, args.length);
+            length += args.length;
+        }
+
+        public Commands build() {
+            return new Commands(Arrays.copyOf(data, length), extent);
+        }
+    }
+
+    /**
+     * 图元指令的回放目标 - 设备上为 Canvas 适配器，JVM 上为软件光栅化器或基准测试的录制画布替身
+     * 坐标均相对准星中心；command 为指令序号，可用于索引编译时按指令创建的资源
+     */
+    interface Sink {
+        void lines(float[] points, int offset, int count);
+
+        void strokeCircle(float cx, float cy, float r);
+
+        void fillCircle(float cx, float cy, float r);
+
+        void dashedCircle(int command, float cx, float cy, float r, float dash, float gap);
+
+        void polyline(int command, float[] points, int offset, int count);
+    }
+
+    /**
+     * 边缘十字的顶点数（4 条线段）
+     */
+    public static final int EDGE_CROSS_POINTS = 16;
+
+    private ReticleGeometry() {
+    }
+
+    /**
+     * 把图元指令回放到 sink，所有渲染端共用这一个回放例程
+     * @param scratch    调用方私有的顶点缓冲（至少 EDGE_CROSS_POINTS 个元素），边缘十字在此原地填充
+     * @param halfWidth  窗口半宽，边缘十字延伸到此
+     * @param halfHeight 窗口半高
+     */
+    public static void replay(Commands commands, Sink sink, float[] scratch, float halfWidth, float halfHeight) {
+        float[] data = commands.data;
+        int command = 0;
+        for (int i = 0; i < data.length; command++) {
+            int op = (int) data[i];
+            int n = (int) data[i + 1];
+            int args = i + 2;
+            switch (op) {
+                case OP_LINES:
+                    sink.lines(data, args, n);
+                    break;
+                case OP_STROKE_CIRCLE:
+                    sink.strokeCircle(data[args], data[args + 1], data[args + 2]);
+                    break;
+                case OP_FILL_CIRCLE:
+                    sink.fillCircle(data[args], data[args + 1], data[args + 2]);
+                    break;
+                case OP_DASHED_CIRCLE:
+                    sink.dashedCircle(command, data[args], data[args + 1], data[args + 2], data[args + 3], data[args + 4]);
+                    break;
+                case OP_POLYLINE:
+                    sink.polyline(command, data, args, n);
+                    break;
+                case OP_EDGE_CROSS:
+                    edgeCross(scratch, halfWidth, halfHeight);
+                    sink.lines(scratch, 0, EDGE_CROSS_POINTS);
+                    break;
+                default:
+                    break;
+            }
+            i = args + n;
+        }
+    }
+
+    /**
+     * 填充从中心向四个方向延伸到窗口边缘的线段
+     */
+    private static void edgeCross(float[] lines, float halfWidth, float halfHeight) {
+        // 右侧水平线 - 从中心延伸到右边缘
+        lines[0] = 0;
+        lines[1] = 0;
+        lines[2] = halfWidth;
+        lines[3] = 0;
+        // 上方垂直线 - 从中心延伸到顶部边缘
+        lines[4] = 0;
+        lines[5] = 0;
+        lines[6] = 0;
+        lines[7] = -halfHeight;
+        // 左侧水平线 - 从中心延伸到左边缘
+        lines[8] = 0;
+        lines[9] = 0;
+        lines[10] = -halfWidth;
+        lines[11] = 0;
+        // 下方垂直线 - 从中心延伸到底部边缘
+        lines[12] = 0;
+        lines[13] = 0;
+        lines[14] = 0;
+        lines[15] = halfHeight;
+    }
+
+    /**
+     * 中心点半径（px）
+     */
+    public static float dotRadius(float density) {
+        return 4 * density;
+    }
+
+    /**
+     * 十字准星中心空隙（px）：准星大小的 20%，不小于 5dp
+     */
+    public static float crossGap(float sizePx, float density) {
+        return Math.max(sizePx * 0.2f, 5 * density);
+    }
+
+    /**
+     * 图元的最大绘制范围（px）：几何范围加半个线宽
+     * 折线转角按圆角连接绘制才成立，尖角斜接会超出顶点半个线宽以上
+     */
+    public static float strokeExtent(Commands commands, float strokeWidth) {
+        return commands.extent + strokeWidth / 2;
+    }
+
+    /**
+     * 准星相对中心的最大绘制范围（px）：主体与中心点取大，再留出抗锯齿余量
+     * @param bodyExtent 主体的最大绘制范围（含线宽）
+     * @param dotRadius  绘制中心点时的半径，不绘制时传 0
+     */
+    public static float boundsRadius(float bodyExtent, float dotRadius) {
+        return Math.max(bodyExtent, dotRadius) + ANTIALIAS_MARGIN;
+    }
+
+    /**
+     * 完整准星窗口（外接正方形）的边长（px）
+     */
+    public static int windowSide(float boundsRadius) {
+        return (int) Math.ceil(boundsRadius) * 2;
+    }
+
+    /**
+     * 按内置类型名生成指令，未知类型按十字准星处理
+     * @param sizePx 准星大小（px）
+     */
+    public static Commands build(String type, float sizePx, float density) {
+        if (DOT.equals(type)) {
+            return dot(dotRadius(density));
+        } else if (TACTICAL.equals(type)) {
+            return tactical(sizePx);
+        } else if (CIRCLE.equals(type)) {
+            return circle(sizePx);
+        } else if (BRACKET.equals(type)) {
+            return bracket(sizePx);
+        } else if (CHEVRON.equals(type)) {
+            return chevron(sizePx);
+        } else if (QUADRANT.equals(type)) {
+            return quadrant(sizePx);
+        }
+        return cross(sizePx, crossGap(sizePx, density));
+    }
+
+    /**
+     * 十字准星：四条线段，中心留空
+     */
+    public static Commands cross(float sizePx, float gap) {
+        return new Builder().lines(
+                0, -sizePx, 0, -gap,  // 上
+                0, gap, 0, sizePx,    // 下
+                -sizePx, 0, -gap, 0,  // 左
+                gap, 0, sizePx, 0     // 右
+        ).build();
+    }
+
+    /**
+     * 单点准星：半径为中心点两倍的实心圆
+     */
+    public static Commands dot(float dotRadius) {
+        return new Builder().fillCircle(0, 0, dotRadius * 2).build();
+    }
+
+    /**
+     * 战术准星：内圆加外围短线
+     */
+    public static Commands tactical(float sizePx) {
+        float half = sizePx * 0.5f;
+        return new Builder()
+                .strokeCircle(0, 0, sizePx * 0.3f)
+                .lines(
+                        -sizePx, 0, -half, 0, // 左
+                        half, 0, sizePx, 0,   // 右
+                        0, -sizePx, 0, -half, // 上
+                        0, half, 0, sizePx    // 下
+                ).build();
+    }
+
+    /**
+     * 圆形准星：虚线圆
+     */
+    public static Commands circle(float sizePx) {
+        return new Builder().dashedCircle(0, 0, sizePx, sizePx * 0.5f, sizePx * 0.3f).build();
+    }
+
+    /**
+     * 方括号准星：四个角各两条线段
+     */
+    public static Commands bracket(float sizePx) {
+        float offset = sizePx * 0.6f;
+        return new Builder().lines(
+                // 左上
+                -sizePx, -offset, -sizePx, -sizePx,
+                -sizePx, -sizePx, -offset, -sizePx,
+                // 右上
+                offset, -sizePx, sizePx, -sizePx,
+                sizePx, -sizePx, sizePx, -offset,
+                // 左下
+                -sizePx, offset, -sizePx, sizePx,
+                -sizePx, sizePx, -offset, sizePx,
+                // 右下
+                offset, sizePx, sizePx, sizePx,
+                sizePx, sizePx, sizePx, offset
+        ).build();
+    }
+
+    /**
+     * V形准星：V 形折线加上方短线
+     */
+    public static Commands chevron(float sizePx) {
+        return new Builder()
+                .polyline(
+                        -sizePx * 0.6f, -sizePx * 0.3f,
+                        0, sizePx * 0.5f,
+                        sizePx * 0.6f, -sizePx * 0.3f)
+                .lines(0, -sizePx, 0, -sizePx * 0.3f)
+                .build();
+    }
+
+    /**
+     * 象限准星：从中心延伸到窗口边缘的十字
+     */
+    public static Commands quadrant(float sizePx) {
+        return new Builder().edgeCross(sizePx).build();
+    }
+}
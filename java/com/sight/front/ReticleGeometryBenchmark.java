@@ -0,0 +1,212 @@
+package com.sight.front;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * 准星几何热路径基准测试 - 在普通 JVM 上测量 ReticleGeometry 的指令生成与回放例程的耗时与分配
+ * 回放执行设备端同一段 ReticleGeometry.replay，输出到 RecordingCanvas（Picture 录制画布的替身），不含光栅化
+ * 配置解析、类型查询、元信息生成等依赖 org.json / android.* 的用例在设备上由 ReticleDeviceBenchmark 测量
+ * 分配按当前线程统计（com.sun.management.ThreadMXBean），不受其他线程干扰
+ *
+ * 用法（仅需 JDK，不依赖 Android）：
+ *   javac -encoding UTF-8 -d out java/com/sight/front/ReticleGeometry.java java/com/sight/front/ReticleGeometryBenchmark.java
+ *   java -cp out com.sight.front.ReticleGeometryBenchmark [每个用例的测量次数]
+ */
+final class ReticleGeometryBenchmark {
+    static final int DEFAULT_ITERATIONS = 200000;
+    static final int WARMUP_DIVISOR = 4;      // 预热次数为测量次数的 1/4
+    static final int RECORDING_BATCH = 256;   // 每段录制的回放次数，与设备上 Picture 录制的分段一致
+    static final float DENSITY = 2.75f;       // 常见 1080p 设备的屏幕密度
+    static final float SIZE_DP = 20;          // 默认准星大小
+    static final float THICKNESS_DP = 1;      // 默认线宽
+    static final int SCREEN_WIDTH = 2400;     // 边缘十字使用的模拟屏幕尺寸（横屏）
+    static final int SCREEN_HEIGHT = 1080;
+
+    private static final String[] TYPES = {
+            ReticleGeometry.CROSS, ReticleGeometry.DOT, ReticleGeometry.TACTICAL, ReticleGeometry.CIRCLE,
+            ReticleGeometry.BRACKET, ReticleGeometry.CHEVRON, ReticleGeometry.QUADRANT
+    };
+
+    /**
+     * 被测操作
+     */
+    interface Operation {
+        void run(int iteration);
+    }
+
+    /**
+     * 录制画布替身 - 作为 ReticleGeometry.replay 的输出端，按 android.graphics.Canvas 的调用形态把绘制指令追加到日志，不做光栅化
+     * 日志缓冲只在扩容时分配，每段录制开始时复用
+     */
+    static final class RecordingCanvas implements ReticleGeometry.Sink {
+        private float[] log = new float[256];
+        private int length;
+        private int calls;
+
+        public void beginRecording() {
+            length = 0;
+            calls = 0;
+        }
+
+        public int getCallCount() {
+            return calls;
+        }
+
+        @Override
+        public void lines(float[] points, int offset, int count) {
+            int start = reserve(1 + count);
+            log[start] = ReticleGeometry.OP_LINES;
+            System.arraycopy(points, offset, log, start + 1, count);
+        }
+
+        @Override
+        public void strokeCircle(float cx, float cy, float r) {
+            circle(ReticleGeometry.OP_STROKE_CIRCLE, cx, cy, r);
+        }
+
+        @Override
+        public void fillCircle(float cx, float cy, float r) {
+            circle(ReticleGeometry.OP_FILL_CIRCLE, cx, cy, r);
+        }
+
+        /**
+         * 设备上虚线效果在编译时创建，回放只录制一次 drawCircle
+         */
+        @Override
+        public void dashedCircle(int command, float cx, float cy, float r, float dash, float gap) {
+            circle(ReticleGeometry.OP_DASHED_CIRCLE, cx, cy, r);
+        }
+
+        /**
+         * 设备上折线在编译时已转为 Path，回放只录制一次 drawPath 引用
+         */
+        @Override
+        public void polyline(int command, float[] points, int offset, int count) {
+            int start = reserve(2);
+            log[start] = ReticleGeometry.OP_POLYLINE;
+            log[start + 1] = command;
+        }
+
+        private void circle(int op, float cx, float cy, float r) {
+            int start = reserve(4);
+            log[start] = op;
+            log[start + 1] = cx;
+            log[start + 2] = cy;
+            log[start + 3] = r;
+        }
+
+        private int reserve(int count) {
+            int start = length;
+            if (start + count > log.length) {
+                log = Arrays.copyOf(log, Math.max(start + count, log.length * 2));
+            }
+            length += count;
+            calls++;
+            return start;
+        }
+    }
+
+    private final int iterations;
+    private final com.sun.management.ThreadMXBean threads;
+
+    ReticleGeometryBenchmark(int iterations) {
+        this.iterations = Math.max(1, iterations);
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+    }
+
+    /**
+     * 运行全部用例并逐行输出结果
+     */
+    public void run() {
+        final float sizePx = SIZE_DP * DENSITY;
+        for (final String type : TYPES) {
+            print("build." + type, measure(new Operation() {
+                @Override
+                public void run(int iteration) {
+                    ReticleGeometry.build(type, sizePx, DENSITY);
+                }
+            }));
+        }
+
+        final RecordingCanvas canvas = new RecordingCanvas();
+        final float[] scratch = new float[ReticleGeometry.EDGE_CROSS_POINTS];
+        for (String type : TYPES) {
+            final ReticleGeometry.Commands commands = ReticleGeometry.build(type, sizePx, DENSITY);
+            final float halfWidth;
+            final float halfHeight;
+            if (ReticleGeometry.QUADRANT.equals(type)) {
+                halfWidth = SCREEN_WIDTH / 2f;
+                halfHeight = SCREEN_HEIGHT / 2f;
+            } else {
+                halfWidth = ReticleGeometry.windowSide(ReticleGeometry.boundsRadius(
+                        ReticleGeometry.strokeExtent(commands, THICKNESS_DP * DENSITY), 0)) / 2f;
+                halfHeight = halfWidth;
+            }
+            print("replay." + type, measure(new Operation() {
+                @Override
+                public void run(int iteration) {
+                    if (iteration % RECORDING_BATCH == 0) {
+                        canvas.beginRecording();
+                    }
+                    ReticleGeometry.replay(commands, canvas, scratch, halfWidth, halfHeight);
+                }
+            }));
+        }
+    }
+
+    /**
+     * @return {纳秒/次, 字节/次}，不支持线程分配统计时字节为 -1
+     */
+    double[] measure(Operation operation) {
+        int warmup = Math.max(1, iterations / WARMUP_DIVISOR);
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocEnd = allocatedBytes();
+
+        double bytes = allocStart < 0 || allocEnd < 0 ? -1 : (double) (allocEnd - allocStart) / iterations;
+        return new double[]{(double) elapsed / iterations, bytes};
+    }
+
+    /**
+     * 当前线程累计分配字节数，不支持时返回 -1
+     */
+    private long allocatedBytes() {
+        if (threads == null) {
+            return -1;
+        }
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void print(String name, double[] result) {
+        System.out.println(String.format("%-20s %10.1f ns/op %10.1f B/op", name, result[0], result[1]));
+    }
+
+    public static void main(String[] args) {
+        int iterations = DEFAULT_ITERATIONS;
+        if (args.length > 0) {
+            try {
+                iterations = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                System.err.println("用法: ReticleGeometryBenchmark [每个用例的测量次数]");
+                System.exit(2);
+            }
+        }
+        new ReticleGeometryBenchmark(iterations).run();
+    }
+}
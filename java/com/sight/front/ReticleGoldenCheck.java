@@ -0,0 +1,272 @@
+package com.sight.front;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 准星黄金图像比对 - 在无设备的 JVM 上用 ReticleRasterizer 渲染每种内置准星及边界配置，与存储的黄金图像比对
+ * 黄金图像为 gzip 压缩的 PAM（RGB_ALPHA，非预乘）
+ *
+ * 用法（仅需 JDK，不依赖 Android）：
+ *   javac -encoding UTF-8 -d out java/com/sight/front/ReticleGeometry.java java/com/sight/front/ReticleRasterizer.java java/com/sight/front/ReticleGoldenCheck.java
+ *   java -cp out com.sight.front.ReticleGoldenCheck java/golden          比对
+ *   java -cp out com.sight.front.ReticleGoldenCheck java/golden --update 重新生成黄金图像
+ */
+final class ReticleGoldenCheck {
+    // 取值范围与 sight_overlay.getConfigMetadata 保持一致
+    static final float MIN_SIZE = 5;
+    static final float MAX_SIZE = 100;
+    static final float MIN_THICKNESS = 1;
+    static final float MAX_THICKNESS = 10;
+    static final float MIN_OPACITY = 0.1f;
+    static final float MAX_OPACITY = 1.0f;
+
+    static final float DENSITY = 1f;
+    static final int TOLERANCE = 2;                // 单通道允许的最大差值
+    static final double MAX_MISMATCH_RATIO = 0.001; // 超出容差的像素比例上限
+    static final int TIMING_RUNS = 20;              // 计时重复次数
+    static final int QUADRANT_WIDTH = 160;          // 象限准星铺满窗口，使用固定的模拟屏幕尺寸
+    static final int QUADRANT_HEIGHT = 90;
+
+    private static final String[] TYPES = {
+            ReticleGeometry.CROSS, ReticleGeometry.DOT, ReticleGeometry.TACTICAL, ReticleGeometry.CIRCLE,
+            ReticleGeometry.BRACKET, ReticleGeometry.CHEVRON, ReticleGeometry.QUADRANT
+    };
+
+    /**
+     * 一个渲染用例
+     */
+    static final class Case {
+        final String name;
+        final String type;
+        final int rgb;
+        final float size;
+        final float thickness;
+        final boolean showDot;
+        final float opacity;
+
+        Case(String variant, String type, int rgb, float size, float thickness, boolean showDot, float opacity) {
+            this.name = type + "-" + variant;
+            this.type = type;
+            this.rgb = rgb;
+            this.size = size;
+            this.thickness = thickness;
+            this.showDot = showDot;
+            this.opacity = opacity;
+        }
+    }
+
+    /**
+     * 渲染结果
+     */
+    static final class Image {
+        final int width;
+        final int height;
+        final int[] argb;
+
+        Image(int width, int height, int[] argb) {
+            this.width = width;
+            this.height = height;
+            this.argb = argb;
+        }
+    }
+
+    private ReticleGoldenCheck() {
+    }
+
+    /**
+     * 每种类型的默认值、最小值、最大值、无中心点与最小尺寸最大线宽用例
+     */
+    static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        for (String type : TYPES) {
+            cases.add(new Case("default", type, 0x00FF00, 20, 1, true, 0.8f));
+            cases.add(new Case("min", type, 0xFF0000, MIN_SIZE, MIN_THICKNESS, true, MIN_OPACITY));
+            cases.add(new Case("max", type, 0x00FFFF, MAX_SIZE, MAX_THICKNESS, true, MAX_OPACITY));
+            cases.add(new Case("nodot", type, 0xFFFF00, 20, 3, false, MAX_OPACITY));
+            // 最小尺寸配最大线宽：线宽相对几何最大，检查转角与端点不被窗口裁剪
+            cases.add(new Case("thick", type, 0xFF00FF, MIN_SIZE, MAX_THICKNESS, true, MAX_OPACITY));
+        }
+        return cases;
+    }
+
+    /**
+     * 按 OverlayView 的规则渲染：主体图元 + 中心点（dot 类型除外），窗口为准星外接正方形
+     */
+    static Image render(Case c) {
+        float sizePx = c.size * DENSITY;
+        float strokeWidth = c.thickness * DENSITY;
+        float dotRadius = ReticleGeometry.dotRadius(DENSITY);
+        ReticleGeometry.Commands commands = ReticleGeometry.build(c.type, sizePx, DENSITY);
+        boolean drawDot = c.showDot && !ReticleGeometry.DOT.equals(c.type);
+
+        int width;
+        int height;
+        if (ReticleGeometry.QUADRANT.equals(c.type)) {
+            width = QUADRANT_WIDTH;
+            height = QUADRANT_HEIGHT;
+        } else {
+            // 与 SightRenderState / ReticlePainter 共用同一套窗口尺寸计算
+            float bounds = ReticleGeometry.boundsRadius(ReticleGeometry.strokeExtent(commands, strokeWidth),
+                    drawDot ? dotRadius : 0);
+            width = ReticleGeometry.windowSide(bounds);
+            height = width;
+        }
+
+        ReticleRasterizer rasterizer = new ReticleRasterizer(width, height);
+        rasterizer.replay(commands, strokeWidth);
+        if (drawDot) {
+            rasterizer.fillCircle(0, 0, dotRadius);
+        }
+        return new Image(width, height, rasterizer.toArgb(c.rgb, c.opacity));
+    }
+
+    /**
+     * 统计超出容差的像素数，尺寸不同返回 -1
+     */
+    static int countMismatches(Image actual, Image expected) {
+        if (actual.width != expected.width || actual.height != expected.height) {
+            return -1;
+        }
+        int mismatches = 0;
+        for (int i = 0; i < actual.argb.length; i++) {
+            int a = actual.argb[i];
+            int e = expected.argb[i];
+            for (int shift = 0; shift < 32; shift += 8) {
+                if (Math.abs(((a >>> shift) & 0xFF) - ((e >>> shift) & 0xFF)) > TOLERANCE) {
+                    mismatches++;
+                    break;
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("用法: ReticleGoldenCheck <黄金图像目录> [--update]");
+            System.exit(2);
+        }
+        File directory = new File(args[0]);
+        boolean update = args.length > 1 && "--update".equals(args[1]);
+        if (update && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+
+        int failures = 0;
+        List<Case> cases = cases();
+        for (Case c : cases) {
+            Image image = render(c);
+            long start = System.nanoTime();
+            for (int i = 0; i < TIMING_RUNS; i++) {
+                render(c);
+            }
+            double micros = (System.nanoTime() - start) / 1000.0 / TIMING_RUNS;
+
+            File golden = new File(directory, c.name + ".pam.gz");
+            String status;
+            if (update) {
+                writeImage(golden, image);
+                status = "UPDATE";
+            } else if (!golden.isFile()) {
+                status = "MISSING";
+                failures++;
+            } else {
+                int mismatches = countMismatches(image, readImage(golden));
+                if (mismatches < 0) {
+                    status = "FAIL (尺寸不一致)";
+                    failures++;
+                } else if (mismatches > image.argb.length * MAX_MISMATCH_RATIO) {
+                    status = "FAIL (" + mismatches + " 像素超出容差)";
+                    failures++;
+                } else {
+                    status = "PASS";
+                }
+            }
+            System.out.println(String.format("%-8s %-18s %4dx%-4d %8.1f us", status, c.name,
+                    image.width, image.height, micros));
+        }
+
+        System.out.println(cases.size() + " 个用例, " + failures + " 个失败");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 写入 gzip 压缩的 PAM 图像
+     */
+    static void writeImage(File file, Image image) throws IOException {
+        OutputStream out = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
+        try {
+            String header = "P7\nWIDTH " + image.width + "\nHEIGHT " + image.height
+                    + "\nDEPTH 4\nMAXVAL 255\nTUPLTYPE RGB_ALPHA\nENDHDR\n";
+            out.write(header.getBytes("US-ASCII"));
+            for (int pixel : image.argb) {
+                out.write((pixel >>> 16) & 0xFF);
+                out.write((pixel >>> 8) & 0xFF);
+                out.write(pixel & 0xFF);
+                out.write((pixel >>> 24) & 0xFF);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 读取 writeImage 写入的 PAM 图像
+     */
+    static Image readImage(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+        try {
+            int width = -1;
+            int height = -1;
+            String line;
+            while (!"ENDHDR".equals(line = readLine(in))) {
+                if (line.startsWith("WIDTH ")) {
+                    width = Integer.parseInt(line.substring(6).trim());
+                } else if (line.startsWith("HEIGHT ")) {
+                    height = Integer.parseInt(line.substring(7).trim());
+                }
+            }
+            if (width <= 0 || height <= 0) {
+                throw new IOException("无效的 PAM 头: " + file);
+            }
+            byte[] bytes = new byte[width * height * 4];
+            in.readFully(bytes);
+            int[] argb = new int[width * height];
+            for (int i = 0; i < argb.length; i++) {
+                int offset = i * 4;
+                argb[i] = ((bytes[offset + 3] & 0xFF) << 24) | ((bytes[offset] & 0xFF) << 16)
+                        | ((bytes[offset + 1] & 0xFF) << 8) | (bytes[offset + 2] & 0xFF);
+            }
+            return new Image(width, height, argb);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("PAM 头不完整");
+            }
+            buffer.write(b);
+        }
+        return buffer.toString("US-ASCII");
+    }
+}
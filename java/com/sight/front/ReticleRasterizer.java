@@ -0,0 +1,194 @@
+package com.sight.front;
+
+import java.util.Arrays;
+
+/**
+ * 准星软件光栅化器 - 纯 Java 实现，把 ReticleGeometry 的图元指令回放到内存中的覆盖率缓冲
+ * 用于在无设备的 JVM 上生成和比对准星图像，不追求与 Skia 逐像素一致
+ *
+ * 抗锯齿按像素中心到图元的距离计算覆盖率（1 像素宽的过渡带），图元之间按 src-over 叠加；
+ * 线段使用平头端点，折线转角按圆角连接近似，虚线从圆的最右侧顺时针开始
+ */
+final class ReticleRasterizer implements ReticleGeometry.Sink {
+    private final int width;
+    private final int height;
+    private final float[] coverage;
+    private final float[] edgeLines = new float[ReticleGeometry.EDGE_CROSS_POINTS];
+    private float halfStroke; // 当前回放的半线宽
+
+    ReticleRasterizer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.coverage = new float[width * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void clear() {
+        Arrays.fill(coverage, 0f);
+    }
+
+    /**
+     * 以缓冲中心为准星中心回放图元指令，与设备端共用 ReticleGeometry.replay
+     * @param strokeWidth 描边线宽（px）
+     */
+    public void replay(ReticleGeometry.Commands commands, float strokeWidth) {
+        halfStroke = strokeWidth / 2;
+        ReticleGeometry.replay(commands, this, edgeLines, width / 2f, height / 2f);
+    }
+
+    @Override
+    public void lines(float[] points, int offset, int count) {
+        for (int j = 0; j + 3 < count; j += 4) {
+            int p = offset + j;
+            strokeLine(points[p], points[p + 1], points[p + 2], points[p + 3], halfStroke);
+        }
+    }
+
+    @Override
+    public void strokeCircle(float cx, float cy, float r) {
+        strokeCircle(cx, cy, r, halfStroke, 0, 0);
+    }
+
+    @Override
+    public void dashedCircle(int command, float cx, float cy, float r, float dash, float gap) {
+        strokeCircle(cx, cy, r, halfStroke, dash, gap);
+    }
+
+    @Override
+    public void polyline(int command, float[] points, int offset, int count) {
+        strokePolyline(points, offset, count, halfStroke);
+    }
+
+    /**
+     * 平头端点线段
+     */
+    public void strokeLine(float x1, float y1, float x2, float y2, float halfStroke) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return;
+        }
+        float ux = dx / length;
+        float uy = dy / length;
+        float reach = halfStroke + 1;
+        int minX = toPixel(Math.min(x1, x2) - reach, width);
+        int maxX = toPixel(Math.max(x1, x2) + reach, width);
+        int minY = toPixel(Math.min(y1, y2) - reach, height);
+        int maxY = toPixel(Math.max(y1, y2) + reach, height);
+        for (int py = minY; py <= maxY; py++) {
+            float y = py + 0.5f - height / 2f;
+            for (int px = minX; px <= maxX; px++) {
+                float x = px + 0.5f - width / 2f;
+                float rx = x - x1;
+                float ry = y - y1;
+                float along = rx * ux + ry * uy;
+                float across = Math.abs(rx * uy - ry * ux);
+                float c = clamp(halfStroke + 0.5f - across) * clamp(Math.min(along, length - along) + 0.5f);
+                blend(px, py, c);
+            }
+        }
+    }
+
+    /**
+     * 实心圆
+     */
+    @Override
+    public void fillCircle(float cx, float cy, float r) {
+        int minX = toPixel(cx - r - 1, width);
+        int maxX = toPixel(cx + r + 1, width);
+        int minY = toPixel(cy - r - 1, height);
+        int maxY = toPixel(cy + r + 1, height);
+        for (int py = minY; py <= maxY; py++) {
+            float y = py + 0.5f - height / 2f - cy;
+            for (int px = minX; px <= maxX; px++) {
+                float x = px + 0.5f - width / 2f - cx;
+                blend(px, py, clamp(r + 0.5f - (float) Math.sqrt(x * x + y * y)));
+            }
+        }
+    }
+
+    /**
+     * 空心圆，dash 大于 0 时按 dash / gap 交替绘制虚线
+     */
+    private void strokeCircle(float cx, float cy, float r, float halfStroke, float dash, float gap) {
+        float reach = r + halfStroke + 1;
+        int minX = toPixel(cx - reach, width);
+        int maxX = toPixel(cx + reach, width);
+        int minY = toPixel(cy - reach, height);
+        int maxY = toPixel(cy + reach, height);
+        float period = dash + gap;
+        for (int py = minY; py <= maxY; py++) {
+            float y = py + 0.5f - height / 2f - cy;
+            for (int px = minX; px <= maxX; px++) {
+                float x = px + 0.5f - width / 2f - cx;
+                float c = clamp(halfStroke + 0.5f - Math.abs((float) Math.sqrt(x * x + y * y) - r));
+                if (c > 0 && dash > 0) {
+                    // 屏幕坐标 y 向下，atan2 的正方向即顺时针
+                    double angle = Math.atan2(y, x);
+                    if (angle < 0) {
+                        angle += 2 * Math.PI;
+                    }
+                    float s = (float) (angle * r) % period;
+                    c *= clamp(Math.min(s, dash - s) + 0.5f);
+                }
+                blend(px, py, c);
+            }
+        }
+    }
+
+    private void strokePolyline(float[] data, int offset, int n, float halfStroke) {
+        for (int j = 0; j + 3 < n; j += 2) {
+            strokeLine(data[offset + j], data[offset + j + 1], data[offset + j + 2], data[offset + j + 3], halfStroke);
+            // 内部顶点补一个圆，近似线段间的连接
+            if (j + 4 < n) {
+                fillCircle(data[offset + j + 2], data[offset + j + 3], halfStroke);
+            }
+        }
+    }
+
+    private void blend(int px, int py, float c) {
+        if (c <= 0) {
+            return;
+        }
+        int index = py * width + px;
+        float current = coverage[index];
+        coverage[index] = current + c * (1 - current);
+    }
+
+    private static float clamp(float value) {
+        return value < 0 ? 0 : (value > 1 ? 1 : value);
+    }
+
+    private static int toPixel(float coordinate, int extent) {
+        int pixel = (int) Math.floor(coordinate + extent / 2f);
+        return pixel < 0 ? 0 : (pixel >= extent ? extent - 1 : pixel);
+    }
+
+    /**
+     * 获取某像素的 8 位透明度（覆盖率 × 不透明度）
+     */
+    public int alphaAt(int px, int py, float opacity) {
+        return Math.round(coverage[py * width + px] * opacity * 255);
+    }
+
+    /**
+     * 以单色输出 ARGB 像素（非预乘）
+     * @param rgb 24 位颜色
+     */
+    public int[] toArgb(int rgb, float opacity) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            int alpha = Math.round(coverage[i] * opacity * 255);
+            pixels[i] = alpha == 0 ? 0 : (alpha << 24) | (rgb & 0xFFFFFF);
+        }
+        return pixels;
+    }
+}
@@ -1,25 +1,83 @@
 package com.sight.front;
 
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.res.Configuration;
+import android.hardware.display.DisplayManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
 import android.provider.Settings;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.DashPathEffect;
 import android.graphics.Path;
+import android.graphics.PathEffect;
+import android.graphics.RectF;
+import android.view.Choreographer;
 import android.view.Gravity;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
 import android.view.View;
 import android.view.WindowManager;
 import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
 import android.util.Log;
+import android.util.LruCache;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
 /**
  * 准星类型常量 - 与 TypeScript SightType 对齐
  */
@@ -33,23 +91,87 @@ class SightType {
     public static final String QUADRANT = "quadrant";  // 象限准星
     public static final String CUSTOM = "custom";      // 自定义准星
 
+    // 类型序号，与紧凑编码及 TypeScript 端 SIGHT_TYPE_ORDINALS 顺序一致，只能追加
+    public static final int ID_CROSS = 0;
+    public static final int ID_DOT = 1;
+    public static final int ID_TACTICAL = 2;
+    public static final int ID_CIRCLE = 3;
+    public static final int ID_BRACKET = 4;
+    public static final int ID_CHEVRON = 5;
+    public static final int ID_QUADRANT = 6;
+    public static final int ID_CUSTOM = 7;
+    public static final int COUNT = 8;
+
+    private static final ConcurrentHashMap<String, Integer> ORDINAL_MAP = new ConcurrentHashMap<>();
+    // 按序号索引的类型名，注册新类型时整体替换（写时复制）
+    private static volatile String[] ordinalTable = {CROSS, DOT, TACTICAL, CIRCLE, BRACKET, CHEVRON, QUADRANT, CUSTOM};
+
+    static {
+        String[] table = ordinalTable;
+        for (int i = 0; i < table.length; i++) {
+            ORDINAL_MAP.put(table[i], i);
+        }
+    }
+
+    /**
+     * 注册类型名并分配序号，已存在时返回原序号
+     * 新类型的序号从 COUNT 开始，超出紧凑编码的 3 位范围，只能通过字符串接口使用
+     */
+    static synchronized int register(String type) {
+        Integer existing = ORDINAL_MAP.get(type);
+        if (existing != null) {
+            return existing;
+        }
+        String[] table = ordinalTable;
+        String[] grown = new String[table.length + 1];
+        System.arraycopy(table, 0, grown, 0, table.length);
+        grown[table.length] = type;
+        ordinalTable = grown;
+        ORDINAL_MAP.put(type, table.length);
+        return table.length;
+    }
+
+    /**
+     * 类型名转序号，未知类型返回 -1
+     */
+    public static int ordinalOf(String type) {
+        if (type == null) {
+            return -1;
+        }
+        Integer ordinal = ORDINAL_MAP.get(type);
+        return ordinal != null ? ordinal : -1;
+    }
+
     /**
-     * 获取所有支持的准星类型
+     * 序号转类型名，越界时返回 null
+     */
+    public static String fromOrdinal(int ordinal) {
+        String[] table = ordinalTable;
+        if (ordinal < 0 || ordinal >= table.length) {
+            return null;
+        }
+        return table[ordinal];
+    }
+
+    /**
+     * 获取所有支持的准星类型（已注册绘制器的类型）
      */
     public static String[] getSupportedTypes() {
-        return new String[]{CROSS, DOT, TACTICAL, CIRCLE, BRACKET, CHEVRON, QUADRANT};
+        return ReticleRegistry.getRegisteredTypes();
     }
 
     /**
      * 检查类型是否支持
      */
     public static boolean isSupported(String type) {
-        for (String supported : getSupportedTypes()) {
-            if (supported.equals(type)) {
-                return true;
-            }
-        }
-        return false;
+        return isSupported(ordinalOf(type));
+    }
+
+    /**
+     * 检查类型序号是否支持
+     */
+    public static boolean isSupported(int ordinal) {
+        return ReticleRegistry.get(ordinal) != null;
     }
 }
 
@@ -64,6 +186,14 @@ class SightDefaults {
     public static final boolean DEFAULT_SHOW_DOT = true;
     public static final double DEFAULT_OPACITY = 0.8;
 
+    // 可配置参数的取值范围（getConfigMetadata 对外描述）
+    public static final double MIN_SIZE = 5;
+    public static final double MAX_SIZE = 100;
+    public static final double MIN_THICKNESS = 1;
+    public static final double MAX_THICKNESS = 10;
+    public static final double MIN_OPACITY = 0.1;
+    public static final double MAX_OPACITY = 1.0;
+
     /**
      * 创建默认配置
      */
@@ -78,6 +208,13 @@ class SightDefaults {
         );
     }
 
+    /**
+     * 获取默认配置的紧凑编码
+     */
+    public static long getDefaultConfigPacked() {
+        return createDefaultConfig().toPacked();
+    }
+
     /**
      * 获取默认配置的 JSON 表示
      */
@@ -98,16 +235,190 @@ class SightDefaults {
     }
 }
 
+/**
+ * 静态元信息缓存 - 支持类型、默认配置与参数元信息在首次请求时生成一次并缓存为字符串
+ * 注册新的准星类型时失效，之后的请求重新生成
+ */
+class SightMetadata {
+    private static volatile String supportedTypesJson;
+    private static volatile String defaultConfigJson;
+    private static volatile String configMetadataJson;
+
+    private SightMetadata() {
+    }
+
+    /**
+     * 支持的准星类型列表（JSON）
+     */
+    public static String getSupportedTypesJson() {
+        String result = supportedTypesJson;
+        if (result == null) {
+            synchronized (SightMetadata.class) {
+                result = supportedTypesJson;
+                if (result == null) {
+                    result = buildSupportedTypes();
+                    supportedTypesJson = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 默认配置（JSON）
+     */
+    public static String getDefaultConfigJson() {
+        String result = defaultConfigJson;
+        if (result == null) {
+            synchronized (SightMetadata.class) {
+                result = defaultConfigJson;
+                if (result == null) {
+                    result = SightDefaults.getDefaultConfigJson().toString();
+                    defaultConfigJson = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 可配置参数的元信息（JSON）
+     */
+    public static String getConfigMetadataJson() {
+        String result = configMetadataJson;
+        if (result == null) {
+            synchronized (SightMetadata.class) {
+                result = configMetadataJson;
+                if (result == null) {
+                    result = buildConfigMetadata();
+                    configMetadataJson = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 类型列表变化时使依赖类型的缓存失效
+     */
+    public static synchronized void invalidateTypes() {
+        supportedTypesJson = null;
+        configMetadataJson = null;
+    }
+
+    static String buildSupportedTypes() {
+        try {
+            JSONArray types = new JSONArray();
+            for (String type : SightType.getSupportedTypes()) {
+                types.put(type);
+            }
+            JSONObject result = new JSONObject();
+            result.put("types", types);
+            return result.toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取支持类型失败: " + e.getMessage());
+            return "{\"types\":[]}";
+        }
+    }
+
+    static String buildConfigMetadata() {
+        try {
+            JSONObject metadata = new JSONObject();
+
+            // type 参数
+            JSONObject typeInfo = new JSONObject();
+            typeInfo.put("type", "string");
+            typeInfo.put("description", "准星类型");
+            typeInfo.put("enum", new JSONArray(SightType.getSupportedTypes()));
+            typeInfo.put("default", SightDefaults.DEFAULT_TYPE);
+            metadata.put("type", typeInfo);
+
+            // color 参数
+            JSONObject colorInfo = new JSONObject();
+            colorInfo.put("type", "string");
+            colorInfo.put("description", "准星颜色（十六进制格式）");
+            colorInfo.put("pattern", "^#[0-9A-Fa-f]{6}$");
+            colorInfo.put("default", SightDefaults.DEFAULT_COLOR);
+            colorInfo.put("examples", new JSONArray(new String[]{"#00FF00", "#FF0000", "#00FFFF", "#FFFF00", "#FF00FF"}));
+            metadata.put("color", colorInfo);
+
+            // size 参数
+            JSONObject sizeInfo = new JSONObject();
+            sizeInfo.put("type", "number");
+            sizeInfo.put("description", "准星大小（像素）");
+            sizeInfo.put("min", (int) SightDefaults.MIN_SIZE);
+            sizeInfo.put("max", (int) SightDefaults.MAX_SIZE);
+            sizeInfo.put("default", SightDefaults.DEFAULT_SIZE);
+            metadata.put("size", sizeInfo);
+
+            // thickness 参数
+            JSONObject thicknessInfo = new JSONObject();
+            thicknessInfo.put("type", "number");
+            thicknessInfo.put("description", "准星粗细（像素）");
+            thicknessInfo.put("min", (int) SightDefaults.MIN_THICKNESS);
+            thicknessInfo.put("max", (int) SightDefaults.MAX_THICKNESS);
+            thicknessInfo.put("default", SightDefaults.DEFAULT_THICKNESS);
+            metadata.put("thickness", thicknessInfo);
+
+            // showDot 参数
+            JSONObject showDotInfo = new JSONObject();
+            showDotInfo.put("type", "boolean");
+            showDotInfo.put("description", "是否显示中心点");
+            showDotInfo.put("default", SightDefaults.DEFAULT_SHOW_DOT);
+            metadata.put("showDot", showDotInfo);
+
+            // opacity 参数
+            JSONObject opacityInfo = new JSONObject();
+            opacityInfo.put("type", "number");
+            opacityInfo.put("description", "准星透明度（0-1）");
+            opacityInfo.put("min", SightDefaults.MIN_OPACITY);
+            opacityInfo.put("max", SightDefaults.MAX_OPACITY);
+            opacityInfo.put("default", SightDefaults.DEFAULT_OPACITY);
+            metadata.put("opacity", opacityInfo);
+
+            return metadata.toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取配置元信息失败: " + e.getMessage());
+            return "{}";
+        }
+    }
+}
+
 /**
  * 悬浮窗配置类
  */
 class SightOverlayConfig {
+    // 字段变更标记，用于 diff 结果
+    public static final int CHANGE_TYPE = 1;
+    public static final int CHANGE_COLOR = 1 << 1;
+    public static final int CHANGE_SIZE = 1 << 2;
+    public static final int CHANGE_THICKNESS = 1 << 3;
+    public static final int CHANGE_SHOW_DOT = 1 << 4;
+    public static final int CHANGE_OPACITY = 1 << 5;
+    public static final int CHANGE_SHAPES = 1 << 6;
+    public static final int CHANGE_LAYERS = 1 << 7;
+    public static final int CHANGE_ALL = CHANGE_TYPE | CHANGE_COLOR | CHANGE_SIZE
+            | CHANGE_THICKNESS | CHANGE_SHOW_DOT | CHANGE_OPACITY | CHANGE_SHAPES | CHANGE_LAYERS;
+
     public String type = "cross";
     public String color = "#00FF00";
     public double size = 20.0;
     public double thickness = 2.0;
     public boolean showDot = true;
     public double opacity = 1.0;
+    public ReticleShapeList shapes; // 自定义准星图形，仅 custom 类型使用
+    public ReticleDefinition reticle; // 预编译的准星定义，仅 custom 类型使用，优先于 shapes
+    public ReticleLayerList layers; // 叠加图层，按顺序绘制在本准星之上
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // 已解析颜色缓存，colorSource 为解析时对应的 color 字符串
+    private String colorSource;
+    private int colorArgb;
+
+    // 已解析类型序号缓存，typeSource 为解析时对应的 type 字符串
+    private String typeSource;
+    private int typeId = -1;
 
     public SightOverlayConfig() {
     }
@@ -121,6 +432,121 @@ class SightOverlayConfig {
         this.opacity = opacity;
     }
 
+    /**
+     * 获取类型序号（SightType.ID_*），结果随 type 字段缓存，未知类型返回 -1
+     */
+    public int getTypeId() {
+        String source = type;
+        if (source != typeSource) {
+            typeId = SightType.ordinalOf(source);
+            typeSource = source;
+        }
+        return typeId;
+    }
+
+    /**
+     * 获取解析后的不透明 ARGB 颜色，结果随 color 字段缓存，颜色非法时回退到默认颜色
+     */
+    public int getColorArgb() {
+        String source = color;
+        if (source != colorSource) {
+            int argb;
+            try {
+                argb = Color.parseColor(source);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                Log.e("SightOverlay", "颜色格式错误: " + source + "，使用默认颜色");
+                argb = Color.parseColor(SightDefaults.DEFAULT_COLOR);
+            }
+            colorArgb = argb | 0xFF000000;
+            colorSource = source;
+        }
+        return colorArgb;
+    }
+
+    /**
+     * 编码为紧凑整数，共 52 位，可被 JS number 精确表示，便于一次桥接调用传递
+     * 从高到低：类型序号 3 位 | RGB 24 位 | 大小×10 10 位 | 粗细×10 7 位 | 透明度×100 7 位 | 中心点 1 位
+     */
+    public long toPacked() {
+        // 动态注册的类型超出 3 位序号范围，按默认类型编码
+        int id = getTypeId();
+        long packed = id >= 0 && id < SightType.COUNT ? id : 0;
+        packed = (packed << 24) | (getColorArgb() & 0xFFFFFFL);
+        packed = (packed << 10) | clampField(Math.round(size * 10), 0x3FF);
+        packed = (packed << 7) | clampField(Math.round(thickness * 10), 0x7F);
+        packed = (packed << 7) | clampField(Math.round(opacity * 100), 100);
+        packed = (packed << 1) | (showDot ? 1 : 0);
+        return packed;
+    }
+
+    private static long clampField(long value, long max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    /**
+     * 从紧凑编码创建配置，不做任何字符串解析
+     */
+    public static SightOverlayConfig fromPacked(long packed) {
+        SightOverlayConfig config = new SightOverlayConfig();
+        config.showDot = (packed & 0x1) != 0;
+        config.opacity = ((packed >>> 1) & 0x7F) / 100.0;
+        config.thickness = ((packed >>> 8) & 0x7F) / 10.0;
+        config.size = ((packed >>> 15) & 0x3FF) / 10.0;
+        int rgb = (int) ((packed >>> 25) & 0xFFFFFF);
+        int typeId = (int) ((packed >>> 49) & 0x7);
+        String type = SightType.fromOrdinal(typeId);
+        config.type = type != null ? type : SightDefaults.DEFAULT_TYPE;
+        config.typeSource = config.type;
+        config.typeId = SightType.ordinalOf(config.type);
+        config.color = formatColor(rgb);
+        // 直接写入颜色缓存，绘制时无需再解析字符串
+        config.colorSource = config.color;
+        config.colorArgb = rgb | 0xFF000000;
+        return config;
+    }
+
+    /**
+     * 格式化为 #RRGGBB
+     */
+    private static String formatColor(int rgb) {
+        char[] hex = HEX_DIGITS;
+        char[] chars = new char[7];
+        chars[0] = '#';
+        for (int i = 6; i >= 1; i--) {
+            chars[i] = hex[rgb & 0xF];
+            rgb >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 与另一配置逐字段比较
+     * @return 变更字段的 CHANGE_* 标记组合，0 表示完全相同
+     */
+    public int diff(SightOverlayConfig other) {
+        if (other == null) {
+            return CHANGE_ALL;
+        }
+        int changes = 0;
+        if (type == null ? other.type != null : !type.equals(other.type)) changes |= CHANGE_TYPE;
+        if (color == null ? other.color != null : !color.equalsIgnoreCase(other.color)) changes |= CHANGE_COLOR;
+        if (size != other.size) changes |= CHANGE_SIZE;
+        if (thickness != other.thickness) changes |= CHANGE_THICKNESS;
+        if (showDot != other.showDot) changes |= CHANGE_SHOW_DOT;
+        if (opacity != other.opacity) changes |= CHANGE_OPACITY;
+        if (shapes == null ? other.shapes != null : !shapes.equals(other.shapes)) changes |= CHANGE_SHAPES;
+        if (reticle != other.reticle) changes |= CHANGE_SHAPES;
+        if (layers == null ? other.layers != null : !layers.equals(other.layers)) changes |= CHANGE_LAYERS;
+        return changes;
+    }
+
+    /**
+     * 是否使用象限准星的横竖细条窗口（带叠加图层时改用单个全屏窗口）
+     */
+    public boolean usesQuadrantStrips() {
+        return getTypeId() == SightType.ID_QUADRANT && layers == null;
+    }
+
     /**
      * 转换为 JSON 对象
      */
@@ -133,6 +559,12 @@ class SightOverlayConfig {
             json.put("thickness", thickness);
             json.put("showDot", showDot);
             json.put("opacity", opacity);
+            if (shapes != null) {
+                json.put("shapes", shapes.toJson());
+            }
+            if (layers != null) {
+                json.put("layers", layers.toJson());
+            }
             return json;
         } catch (JSONException e) {
             Log.e("SightOverlay", "配置转JSON失败: " + e.getMessage());
@@ -152,6 +584,8 @@ class SightOverlayConfig {
             if (json.has("thickness")) config.thickness = json.getDouble("thickness");
             if (json.has("showDot")) config.showDot = json.getBoolean("showDot");
             if (json.has("opacity")) config.opacity = json.getDouble("opacity");
+            if (json.has("shapes")) config.shapes = ReticleShapeList.fromJson(json.getJSONArray("shapes"));
+            if (json.has("layers")) config.layers = ReticleLayerList.fromJson(json.getJSONArray("layers"), 0);
         } catch (JSONException e) {
             Log.e("SightOverlay", "JSON解析失败: " + e.getMessage());
         }
@@ -160,360 +594,5185 @@ class SightOverlayConfig {
 }
 
 /**
- * 悬浮窗视图 - 自定义绘制准星
+ * 准星叠加图层列表 - 不可变，按顺序绘制在基础准星之上，每层带相对准星中心的偏移（dp）
+ * 图层的 opacity 为相对于基础准星的透明度，基础准星的 opacity 作用于整体
  */
-class OverlayView extends View {
-    private Paint paint;
-    private Paint dotPaint;
-    private SightOverlayConfig config;
+class ReticleLayerList {
+    private final SightOverlayConfig[] configs;
+    private final float[] offsets; // 每层 2 个：offsetX, offsetY（dp）
 
-    public OverlayView(Context context) {
-        super(context);
-        initPaints();
+    ReticleLayerList(SightOverlayConfig[] configs, float[] offsets) {
+        this.configs = configs;
+        this.offsets = offsets;
     }
 
-    private void initPaints() {
-        paint = new Paint();
-        paint.setAntiAlias(true);
-        paint.setStyle(Paint.Style.STROKE);
+    public int size() {
+        return configs.length;
+    }
 
-        dotPaint = new Paint();
-        dotPaint.setAntiAlias(true);
-        dotPaint.setStyle(Paint.Style.FILL);
+    public SightOverlayConfig configAt(int index) {
+        return configs[index];
     }
 
-    public void setConfig(SightOverlayConfig config) {
-        this.config = config;
-        invalidate();
+    public float offsetXAt(int index) {
+        return offsets[index * 2];
     }
 
-    public SightOverlayConfig getConfig() {
-        return this.config;
+    public float offsetYAt(int index) {
+        return offsets[index * 2 + 1];
     }
 
-    public boolean isFullScreen() {
-        return config != null && "quadrant".equals(config.type);
+    /**
+     * 是否包含某类型的图层
+     */
+    public boolean hasType(int typeId) {
+        for (SightOverlayConfig config : configs) {
+            if (config.getTypeId() == typeId) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    /**
+     * 从 JSON 数组解析，每项为配置字段加可选的 offsetX / offsetY，图层不可再嵌套图层
+     * @param start 起始下标
+     * @return 没有图层时返回 null
+     */
+    public static ReticleLayerList fromJson(JSONArray array, int start) throws JSONException {
+        int count = array.length() - start;
+        if (count <= 0) {
+            return null;
+        }
+        SightOverlayConfig[] configs = new SightOverlayConfig[count];
+        float[] offsets = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            JSONObject item = array.getJSONObject(start + i);
+            SightOverlayConfig config = SightOverlayConfig.fromJson(item);
+            config.layers = null;
+            configs[i] = config;
+            offsets[i * 2] = (float) item.optDouble("offsetX", 0);
+            offsets[i * 2 + 1] = (float) item.optDouble("offsetY", 0);
+        }
+        return new ReticleLayerList(configs, offsets);
+    }
 
-        if (config == null) {
-            return;
+    public JSONArray toJson() throws JSONException {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < configs.length; i++) {
+            JSONObject item = configs[i].toJson();
+            item.put("offsetX", offsets[i * 2]);
+            item.put("offsetY", offsets[i * 2 + 1]);
+            array.put(item);
         }
+        return array;
+    }
 
-        float width = getWidth();
-        float height = getHeight();
-        float centerX = width / 2;
-        float centerY = height / 2;
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReticleLayerList)) return false;
+        ReticleLayerList other = (ReticleLayerList) o;
+        if (configs.length != other.configs.length || !Arrays.equals(offsets, other.offsets)) {
+            return false;
+        }
+        for (int i = 0; i < configs.length; i++) {
+            if (configs[i].diff(other.configs[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        // 转换颜色
-        int colorInt = Color.parseColor(config.color);
-        int alpha = (int) (config.opacity * 255);
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(offsets);
+        for (SightOverlayConfig config : configs) {
+            result = 31 * result + config.getTypeId();
+            result = 31 * result + config.getColorArgb();
+            long bits = Double.doubleToLongBits(config.size);
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            bits = Double.doubleToLongBits(config.thickness);
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            bits = Double.doubleToLongBits(config.opacity);
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            result = 31 * result + (config.showDot ? 1 : 0);
+        }
+        return result;
+    }
+}
 
-        paint.setColor(colorInt);
-        paint.setAlpha(alpha);
+/**
+ * 准星绘制状态 - 在配置变更时一次性编译，绘制时只读
+ * 所有几何坐标均相对于准星中心点，绘制前由 Canvas 平移到中心
+ */
+class SightRenderState {
+    // 影响预编译几何数据的配置变更
+    private static final int GEOMETRY_CHANGES = SightOverlayConfig.CHANGE_TYPE | SightOverlayConfig.CHANGE_SIZE
+            | SightOverlayConfig.CHANGE_THICKNESS | SightOverlayConfig.CHANGE_SHAPES;
 
-        dotPaint.setColor(colorInt);
-        dotPaint.setAlpha(alpha);
+    public final SightOverlayConfig config;
+    public final int typeId;         // 类型序号（SightType.ID_*），未知类型按十字准星处理
+    public final ReticleRenderer renderer; // 该类型的绘制器
+    public final int color;          // 已解析的不透明 ARGB 颜色（透明度由 View.setAlpha 控制）
+    public final float density;      // 屏幕密度
+    public final float sizePx;       // 准星大小（px）
+    public final float dotSizePx;    // 中心点半径（px）
+    public final float gap;          // 十字准星中心空隙（px）
+    public final float strokeWidth;  // 线条宽度（px）
+    public final Object compiled;    // 绘制器预编译的数据（路径、虚线效果等）
+    public final float boundsRadius; // 准星外接正方形的半边长（px，含线宽与抗锯齿余量）
+    public final int stripHalfThickness; // 象限准星水平细条窗口的半高（px，含中心点）
+    public final int lineHalfThickness;  // 象限准星竖直细条窗口的半宽（px）
+    public final SightRenderState[] layers; // 叠加图层的绘制状态，无叠加时为 null
+    public final float[] layerOffsets;      // 每层偏移（px），每层 2 个
+    public final int[] layerAlphas;         // 每层相对透明度（0-255）
+    public final boolean fullScreen;        // 叠加图层中含象限准星，窗口需铺满屏幕
 
-        // 计算实际大小（dp 转 px）
-        float density = getResources().getDisplayMetrics().density;
-        float sizePx = (float) config.size * density;
-        float dotSizePx = 4 * density;
-        float gap = Math.max(sizePx * 0.2f, 5 * density);
+    public SightRenderState(SightOverlayConfig config, float density) {
+        this(config, density, null);
+    }
 
-        paint.setStrokeWidth((float) config.thickness * density);
+    /**
+     * @param previous 上一次的绘制状态，几何相关字段未变化时直接复用其预编译数据
+     */
+    public SightRenderState(SightOverlayConfig config, float density, SightRenderState previous) {
+        this.config = config;
+        this.density = density;
+        int id = config.getTypeId();
+        ReticleRenderer found = ReticleRegistry.get(id);
+        if (found == null) {
+            id = SightType.ID_CROSS;
+            found = ReticleRegistry.get(id);
+        }
+        this.typeId = id;
+        this.renderer = found;
+        this.color = config.getColorArgb();
+        this.sizePx = (float) config.size * density;
+        this.dotSizePx = ReticleGeometry.dotRadius(density);
+        this.gap = ReticleGeometry.crossGap(sizePx, density);
+        this.strokeWidth = (float) config.thickness * density;
+        if (previous != null && previous.density == density && previous.renderer == renderer
+                && (config.diff(previous.config) & GEOMETRY_CHANGES) == 0) {
+            this.compiled = previous.compiled;
+        } else {
+            this.compiled = renderer.compile(this);
+        }
+        ReticleLayerList layerList = config.layers;
+        if (layerList != null) {
+            int count = layerList.size();
+            this.layers = new SightRenderState[count];
+            this.layerOffsets = new float[count * 2];
+            this.layerAlphas = new int[count];
+            SightRenderState[] previousLayers = previous != null ? previous.layers : null;
+            for (int i = 0; i < count; i++) {
+                // 同一位置的图层复用上一次的预编译数据
+                SightRenderState previousLayer = previousLayers != null && i < previousLayers.length ? previousLayers[i] : null;
+                layers[i] = new SightRenderState(layerList.configAt(i), density, previousLayer);
+                layerOffsets[i * 2] = layerList.offsetXAt(i) * density;
+                layerOffsets[i * 2 + 1] = layerList.offsetYAt(i) * density;
+                layerAlphas[i] = (int) Math.round(Math.max(0, Math.min(1, layerList.configAt(i).opacity)) * 255);
+            }
+            this.fullScreen = typeId == SightType.ID_QUADRANT || layerList.hasType(SightType.ID_QUADRANT);
+        } else {
+            this.layers = null;
+            this.layerOffsets = null;
+            this.layerAlphas = null;
+            this.fullScreen = false;
+        }
+        this.boundsRadius = computeBoundsRadius();
+        float dotExtent = config.showDot ? dotSizePx : 0;
+        this.stripHalfThickness = (int) Math.ceil(Math.max(strokeWidth / 2, dotExtent) + 2);
+        this.lineHalfThickness = (int) Math.ceil(strokeWidth / 2 + 2);
+    }
 
-        // 根据类型绘制不同准星
-        switch (config.type) {
-            case "cross":
-                drawCross(canvas, centerX, centerY, sizePx, gap);
-                break;
-            case "dot":
-                drawDotOnly(canvas, centerX, centerY, dotSizePx);
-                break;
-            case "tactical":
-                drawTactical(canvas, centerX, centerY, sizePx);
-                break;
-            case "circle":
-                drawCircle(canvas, centerX, centerY, sizePx);
-                break;
-            case "bracket":
-                drawBracket(canvas, centerX, centerY, sizePx);
-                break;
-            case "chevron":
-                drawChevron(canvas, centerX, centerY, sizePx);
-                break;
-            case "quadrant":
-                drawQuadrant(canvas, centerX, centerY, sizePx);
-                break;
-            default:
-                drawCross(canvas, centerX, centerY, sizePx, gap);
-                break;
+    /**
+     * 计算准星相对中心的最大绘制范围，象限准星铺满窗口不在此列
+     */
+    private float computeBoundsRadius() {
+        float extent = ReticleGeometry.boundsRadius(renderer.getExtent(this),
+                config.showDot && typeId != SightType.ID_DOT ? dotSizePx : 0);
+        if (layers != null) {
+            for (int i = 0; i < layers.length; i++) {
+                float offset = Math.max(Math.abs(layerOffsets[i * 2]), Math.abs(layerOffsets[i * 2 + 1]));
+                extent = Math.max(extent, offset + layers[i].boundsRadius);
+            }
         }
+        return extent;
+    }
+
+}
+
+/**
+ * 准星绘制器接口 - 每种准星类型对应一个实现，通过 ReticleRegistry 按类型注册
+ * 画布原点在调用 draw 前已平移到准星中心
+ */
+interface ReticleRenderer {
+
+    /**
+     * 配置变更时调用一次，返回需要缓存的预编译数据（保存在 state.compiled），无则返回 null
+     * 注意此时 state.compiled 与 state.boundsRadius 尚未赋值
+     */
+    Object compile(SightRenderState state);
+
+    /**
+     * 相对中心的最大绘制范围（px，含线宽），用于确定窗口与位图尺寸
+     */
+    float getExtent(SightRenderState state);
+
+    /**
+     * 绘制准星主体（中心点由调用方统一绘制），不得在此分配对象
+     * 编译结果在多个绘制者间共享且只读，绘制时需要的可写状态使用调用方私有的 scratch
+     */
+    void draw(Canvas canvas, SightRenderState state, Paint paint, Paint dotPaint, ReticleDrawScratch scratch,
+              float halfWidth, float halfHeight);
+}
+
+/**
+ * 准星绘制器注册表 - 按类型序号索引，每帧绘制直接按下标查表
+ */
+class ReticleRegistry {
+    // 按类型序号索引的绘制器，注册时整体替换（写时复制），读取无锁
+    private static volatile ReticleRenderer[] renderers = new ReticleRenderer[SightType.COUNT];
+
+    static {
+        ReticleRenderer[] table = renderers;
+        table[SightType.ID_CROSS] = new GeometryReticleRenderer(SightType.CROSS);
+        table[SightType.ID_DOT] = new GeometryReticleRenderer(SightType.DOT);
+        table[SightType.ID_TACTICAL] = new GeometryReticleRenderer(SightType.TACTICAL);
+        table[SightType.ID_CIRCLE] = new GeometryReticleRenderer(SightType.CIRCLE);
+        table[SightType.ID_BRACKET] = new GeometryReticleRenderer(SightType.BRACKET);
+        table[SightType.ID_CHEVRON] = new GeometryReticleRenderer(SightType.CHEVRON);
+        table[SightType.ID_QUADRANT] = new GeometryReticleRenderer(SightType.QUADRANT);
+        table[SightType.ID_CUSTOM] = new CustomReticleRenderer();
+    }
+
+    /**
+     * 按类型序号获取绘制器，未注册返回 null
+     */
+    public static ReticleRenderer get(int typeId) {
+        ReticleRenderer[] table = renderers;
+        if (typeId < 0 || typeId >= table.length) {
+            return null;
+        }
+        return table[typeId];
+    }
+
+    /**
+     * 注册（或替换）某类型的绘制器，新类型名会自动分配序号
+     * @return 类型序号
+     */
+    public static synchronized int register(String type, ReticleRenderer renderer) {
+        int typeId = SightType.register(type);
+        ReticleRenderer[] table = renderers;
+        ReticleRenderer[] updated = Arrays.copyOf(table, Math.max(table.length, typeId + 1));
+        updated[typeId] = renderer;
+        renderers = updated;
+        SightMetadata.invalidateTypes();
+        Log.i("SightOverlay", "注册准星绘制器: " + type + " (" + typeId + ")");
+        return typeId;
+    }
+
+    /**
+     * 获取已注册绘制器的类型名，按序号排列
+     */
+    public static String[] getRegisteredTypes() {
+        ReticleRenderer[] table = renderers;
+        String[] types = new String[table.length];
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                types[count++] = SightType.fromOrdinal(i);
+            }
+        }
+        return Arrays.copyOf(types, count);
+    }
+}
+
+/**
+ * 内置准星绘制器 - 几何由纯 Java 的 ReticleGeometry 生成，此处只负责把图元指令回放到 Canvas
+ * 虚线效果与折线路径在编译时创建，绘制时不分配对象
+ */
+final class GeometryReticleRenderer implements ReticleRenderer {
+    private final String type;
+
+    /**
+     * 编译结果：图元指令及其对应的 Android 绘图资源
+     */
+    static final class Compiled {
+        final ReticleGeometry.Commands commands;
+        final Object[] resources;  // 按指令序号索引：虚线圆为 PathEffect，折线为 Path，其余为 null
+
+        Compiled(ReticleGeometry.Commands commands) {
+            this.commands = commands;
+            this.resources = new Object[commands.count()];
+            float[] data = commands.data;
+            int command = 0;
+            for (int i = 0; i < data.length; command++) {
+                int op = (int) data[i];
+                int n = (int) data[i + 1];
+                int args = i + 2;
+                if (op == ReticleGeometry.OP_DASHED_CIRCLE) {
+                    resources[command] = new DashPathEffect(new float[]{data[args + 3], data[args + 4]}, 0);
+                } else if (op == ReticleGeometry.OP_POLYLINE) {
+                    Path path = new Path();
+                    path.moveTo(data[args], data[args + 1]);
+                    for (int j = 2; j < n; j += 2) {
+                        path.lineTo(data[args + j], data[args + j + 1]);
+                    }
+                    resources[command] = path;
+                }
+                i = args + n;
+            }
+        }
+    }
+
+    GeometryReticleRenderer(String type) {
+        this.type = type;
+    }
+
+    @Override
+    public Object compile(SightRenderState state) {
+        return new Compiled(ReticleGeometry.build(type, state.sizePx, state.density));
+    }
+
+    @Override
+    public float getExtent(SightRenderState state) {
+        return ReticleGeometry.strokeExtent(((Compiled) state.compiled).commands, state.strokeWidth);
+    }
+
+    @Override
+    public void draw(Canvas canvas, SightRenderState state, Paint paint, Paint dotPaint, ReticleDrawScratch scratch,
+                     float halfWidth, float halfHeight) {
+        Compiled compiled = (Compiled) state.compiled;
+        CanvasSink sink = scratch.sink;
+        sink.bind(canvas, compiled.resources, paint, dotPaint);
+        ReticleGeometry.replay(compiled.commands, sink, scratch.lines, halfWidth, halfHeight);
+        sink.unbind();
+    }
+
+    /**
+     * 把 ReticleGeometry.replay 的回放调用转成 Canvas 绘制，画布原点需已平移到准星中心
+     * 每个绘制者私有一个（见 ReticleDrawScratch），绘制期间绑定画布与画笔
+     */
+    static final class CanvasSink implements ReticleGeometry.Sink {
+        private Canvas canvas;
+        private Object[] resources;
+        private Paint paint;
+        private Paint dotPaint;
+
+        void bind(Canvas canvas, Object[] resources, Paint paint, Paint dotPaint) {
+            this.canvas = canvas;
+            this.resources = resources;
+            this.paint = paint;
+            this.dotPaint = dotPaint;
+        }
+
+        /**
+         * 绘制结束后释放画布引用，避免位图画布被长期持有
+         */
+        void unbind() {
+            bind(null, null, null, null);
+        }
+
+        @Override
+        public void lines(float[] points, int offset, int count) {
+            canvas.drawLines(points, offset, count, paint);
+        }
+
+        @Override
+        public void strokeCircle(float cx, float cy, float r) {
+            canvas.drawCircle(cx, cy, r, paint);
+        }
+
+        @Override
+        public void fillCircle(float cx, float cy, float r) {
+            canvas.drawCircle(cx, cy, r, dotPaint);
+        }
+
+        @Override
+        public void dashedCircle(int command, float cx, float cy, float r, float dash, float gap) {
+            // 虚线效果在编译时创建
+            paint.setPathEffect((PathEffect) resources[command]);
+            canvas.drawCircle(cx, cy, r, paint);
+            // 重置虚线效果
+            paint.setPathEffect(null);
+        }
+
+        @Override
+        public void polyline(int command, float[] points, int offset, int count) {
+            // 折线路径在编译时创建；转角使用圆角连接，不超出顶点半个线宽，与 strokeExtent 的窗口范围一致
+            // （尖角斜接在 V 形准星顶点处可超出近 0.8 倍线宽而被窗口裁剪）
+            paint.setStrokeJoin(Paint.Join.ROUND);
+            canvas.drawPath((Path) resources[command], paint);
+            // 重置连接样式
+            paint.setStrokeJoin(Paint.Join.MITER);
+        }
+    }
+}
+
+/**
+ * 绘制临时状态 - 每个绘制者（视图的 ReticlePainter、位图缓存、基准测试）私有一份
+ * 编译结果在绘制者之间共享且只读，绘制时的可写状态都放在这里
+ */
+final class ReticleDrawScratch {
+    final float[] lines = new float[ReticleGeometry.EDGE_CROSS_POINTS]; // 边缘十字等临时顶点
+    final GeometryReticleRenderer.CanvasSink sink = new GeometryReticleRenderer.CanvasSink();
+}
+
+/**
+ * 自定义准星图形列表 - 不可变，坐标以准星大小为单位（1.0 = size），相对准星中心
+ * 每个图元固定占 STRIDE 个 float：[kind, p1, p2, p3, p4, p5]
+ */
+class ReticleShapeList {
+    public static final int KIND_LINE = 0; // x1, y1, x2, y2
+    public static final int KIND_ARC = 1;  // cx, cy, r, startAngle, sweepAngle（角度，顺时针）
+    public static final int KIND_DOT = 2;  // cx, cy, r（实心圆）
+    public static final int STRIDE = 6;
+
+    private final float[] data;
+
+    private ReticleShapeList(float[] data) {
+        this.data = data;
+    }
+
+    public int size() {
+        return data.length / STRIDE;
+    }
+
+    public int kindAt(int index) {
+        return (int) data[index * STRIDE];
+    }
+
+    /**
+     * 第 index 个图元的第 param 个参数（从 0 开始）
+     */
+    public float paramAt(int index, int param) {
+        return data[index * STRIDE + 1 + param];
+    }
+
+    /**
+     * 相对中心的最大范围（以准星大小为单位）
+     */
+    public float getExtent() {
+        float extent = 0;
+        for (int i = 0; i < size(); i++) {
+            float a = Math.abs(paramAt(i, 0));
+            float b = Math.abs(paramAt(i, 1));
+            if (kindAt(i) == KIND_LINE) {
+                extent = Math.max(extent, Math.max(Math.max(a, b),
+                        Math.max(Math.abs(paramAt(i, 2)), Math.abs(paramAt(i, 3)))));
+            } else {
+                extent = Math.max(extent, Math.max(a, b) + Math.abs(paramAt(i, 2)));
+            }
+        }
+        return extent;
+    }
+
+    /**
+     * 从 JSON 数组解析，例如 [{"kind":"line","x1":-1,"y1":0,"x2":-0.3,"y2":0}, {"kind":"dot","cx":0,"cy":0,"r":0.1}]
+     */
+    public static ReticleShapeList fromJson(JSONArray array) throws JSONException {
+        float[] data = new float[array.length() * STRIDE];
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject shape = array.getJSONObject(i);
+            String kind = shape.getString("kind");
+            int offset = i * STRIDE;
+            switch (kind) {
+                case "line":
+                    data[offset] = KIND_LINE;
+                    data[offset + 1] = (float) shape.getDouble("x1");
+                    data[offset + 2] = (float) shape.getDouble("y1");
+                    data[offset + 3] = (float) shape.getDouble("x2");
+                    data[offset + 4] = (float) shape.getDouble("y2");
+                    break;
+                case "arc":
+                    data[offset] = KIND_ARC;
+                    data[offset + 1] = (float) shape.getDouble("cx");
+                    data[offset + 2] = (float) shape.getDouble("cy");
+                    data[offset + 3] = (float) shape.getDouble("r");
+                    data[offset + 4] = (float) shape.optDouble("start", 0);
+                    data[offset + 5] = (float) shape.optDouble("sweep", 360);
+                    break;
+                case "dot":
+                    data[offset] = KIND_DOT;
+                    data[offset + 1] = (float) shape.getDouble("cx");
+                    data[offset + 2] = (float) shape.getDouble("cy");
+                    data[offset + 3] = (float) shape.getDouble("r");
+                    break;
+                default:
+                    throw new JSONException("未知图元类型: " + kind);
+            }
+        }
+        return new ReticleShapeList(data);
+    }
+
+    /**
+     * 转换为 JSON 数组
+     */
+    public JSONArray toJson() throws JSONException {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < size(); i++) {
+            JSONObject shape = new JSONObject();
+            switch (kindAt(i)) {
+                case KIND_LINE:
+                    shape.put("kind", "line");
+                    shape.put("x1", paramAt(i, 0));
+                    shape.put("y1", paramAt(i, 1));
+                    shape.put("x2", paramAt(i, 2));
+                    shape.put("y2", paramAt(i, 3));
+                    break;
+                case KIND_ARC:
+                    shape.put("kind", "arc");
+                    shape.put("cx", paramAt(i, 0));
+                    shape.put("cy", paramAt(i, 1));
+                    shape.put("r", paramAt(i, 2));
+                    shape.put("start", paramAt(i, 3));
+                    shape.put("sweep", paramAt(i, 4));
+                    break;
+                default:
+                    shape.put("kind", "dot");
+                    shape.put("cx", paramAt(i, 0));
+                    shape.put("cy", paramAt(i, 1));
+                    shape.put("r", paramAt(i, 2));
+                    break;
+            }
+            array.put(shape);
+        }
+        return array;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReticleShapeList)) return false;
+        return Arrays.equals(data, ((ReticleShapeList) o).data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(data);
+    }
+}
+
+/**
+ * 自定义准星绘制器，支持两种来源：
+ * 1. 预编译的准星定义（ReticleDefinition）：顶点按像素缩放后，每帧一次 drawLines 加实心点
+ * 2. 图形列表（ReticleShapeList）：编译时合并为一条填充路径，每帧只需一次 drawPath
+ */
+class CustomReticleRenderer implements ReticleRenderer {
+
+    /**
+     * 缩放到像素坐标的顶点数据
+     */
+    static final class ScaledVertices {
+        final float[] lines;        // drawLines 顶点，每 4 个 float 一条线段
+        final float[] dotDiameters; // 每组实心点的直径
+        final float[][] dotPoints;  // 每组实心点的 drawPoints 坐标，同组半径相同
+
+        ScaledVertices(float[] lines, float[] dots) {
+            this.lines = lines;
+
+            // 按半径分组，同组实心点用一次 drawPoints（圆头端点）绘制
+            int count = dots.length / 3;
+            float[] radii = new float[count];
+            int groups = 0;
+            for (int i = 0; i < count; i++) {
+                float r = dots[i * 3 + 2];
+                boolean found = false;
+                for (int g = 0; g < groups; g++) {
+                    if (radii[g] == r) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    radii[groups++] = r;
+                }
+            }
+            this.dotDiameters = new float[groups];
+            this.dotPoints = new float[groups][];
+            for (int g = 0; g < groups; g++) {
+                int members = 0;
+                for (int i = 0; i < count; i++) {
+                    if (dots[i * 3 + 2] == radii[g]) members++;
+                }
+                float[] points = new float[members * 2];
+                int p = 0;
+                for (int i = 0; i < count; i++) {
+                    if (dots[i * 3 + 2] == radii[g]) {
+                        points[p++] = dots[i * 3];
+                        points[p++] = dots[i * 3 + 1];
+                    }
+                }
+                this.dotDiameters[g] = radii[g] * 2;
+                this.dotPoints[g] = points;
+            }
+        }
+    }
+
+    @Override
+    public Object compile(SightRenderState state) {
+        ReticleDefinition reticle = state.config.reticle;
+        if (reticle != null) {
+            return new ScaledVertices(scale(reticle.lines, state.sizePx), scale(reticle.dots, state.sizePx));
+        }
+
+        ReticleShapeList shapes = state.config.shapes;
+        Path result = new Path();
+        if (shapes == null) {
+            return result;
+        }
+
+        float scale = state.sizePx;
+        Path strokes = new Path();
+        RectF oval = new RectF();
+        for (int i = 0; i < shapes.size(); i++) {
+            float a = shapes.paramAt(i, 0) * scale;
+            float b = shapes.paramAt(i, 1) * scale;
+            float c = shapes.paramAt(i, 2) * scale;
+            switch (shapes.kindAt(i)) {
+                case ReticleShapeList.KIND_LINE:
+                    strokes.moveTo(a, b);
+                    strokes.lineTo(c, shapes.paramAt(i, 3) * scale);
+                    break;
+                case ReticleShapeList.KIND_ARC:
+                    oval.set(a - c, b - c, a + c, b + c);
+                    strokes.addArc(oval, shapes.paramAt(i, 3), shapes.paramAt(i, 4));
+                    break;
+                default:
+                    result.addCircle(a, b, c, Path.Direction.CW);
+                    break;
+            }
+        }
+
+        // 将线条轮廓化，使整个准星可以用一次填充绘制
+        Paint strokePaint = new Paint();
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(state.strokeWidth);
+        Path outline = new Path();
+        strokePaint.getFillPath(strokes, outline);
+        result.addPath(outline);
+        return result;
+    }
+
+    private static float[] scale(float[] source, float factor) {
+        float[] scaled = new float[source.length];
+        for (int i = 0; i < source.length; i++) {
+            scaled[i] = source[i] * factor;
+        }
+        return scaled;
+    }
+
+    @Override
+    public float getExtent(SightRenderState state) {
+        if (state.config.reticle != null) {
+            return state.config.reticle.extent * state.sizePx + state.strokeWidth / 2;
+        }
+        ReticleShapeList shapes = state.config.shapes;
+        if (shapes == null) {
+            return 0;
+        }
+        return shapes.getExtent() * state.sizePx + state.strokeWidth / 2;
+    }
+
+    @Override
+    public void draw(Canvas canvas, SightRenderState state, Paint paint, Paint dotPaint, ReticleDrawScratch scratch,
+                     float halfWidth, float halfHeight) {
+        Object compiled = state.compiled;
+        if (compiled instanceof ScaledVertices) {
+            ScaledVertices vertices = (ScaledVertices) compiled;
+            // 圆弧被拆成多段折线，使用圆头端点消除线段衔接处的缝隙
+            paint.setStrokeCap(Paint.Cap.ROUND);
+            canvas.drawLines(vertices.lines, paint);
+            // 实心点以线宽为直径的圆头点绘制
+            float strokeWidth = paint.getStrokeWidth();
+            for (int g = 0; g < vertices.dotPoints.length; g++) {
+                paint.setStrokeWidth(vertices.dotDiameters[g]);
+                canvas.drawPoints(vertices.dotPoints[g], paint);
+            }
+            paint.setStrokeWidth(strokeWidth);
+            paint.setStrokeCap(Paint.Cap.BUTT);
+        } else {
+            canvas.drawPath((Path) compiled, dotPaint);
+        }
+    }
+}
+
+/**
+ * 预编译的准星定义 - 由 ReticleCompiler 生成，几何已展开为 drawLines 顶点数组
+ * 坐标以准星大小为单位，相对准星中心
+ */
+class ReticleDefinition {
+    public final String name;
+    public final String hash;       // 定义原文的内容哈希
+    public final long packedStyle;  // 样式（SightOverlayConfig.toPacked 格式，类型固定为 custom）
+    public final float[] lines;     // drawLines 顶点，每 4 个 float 一条线段
+    public final float[] dots;      // 实心点，每 3 个 float 为 cx, cy, r
+    public final float extent;      // 相对中心的最大范围
+
+    ReticleDefinition(String name, String hash, long packedStyle, float[] lines, float[] dots, float extent) {
+        this.name = name;
+        this.hash = hash;
+        this.packedStyle = packedStyle;
+        this.lines = lines;
+        this.dots = dots;
+        this.extent = extent;
+    }
+
+    /**
+     * 按定义中的样式创建显示配置
+     */
+    public SightOverlayConfig createConfig() {
+        SightOverlayConfig config = SightOverlayConfig.fromPacked(packedStyle);
+        config.reticle = this;
+        return config;
+    }
+}
+
+/**
+ * 准星定义编译器 - 解析版本化的准星定义并把图元展开为顶点数组
+ *
+ * 定义格式（version 1）：
+ * {"version":1, "name":"...", "style":{"color","size","thickness","showDot","opacity"}, "shapes":[...]}
+ * shapes 与 ReticleShapeList 格式一致
+ */
+class ReticleCompiler {
+    public static final int FORMAT_VERSION = 1;
+    private static final float ARC_SEGMENT_DEGREES = 6f; // 圆弧每段折线的角度
+
+    private ReticleCompiler() {
+    }
+
+    /**
+     * 编译准星定义
+     * @param hash 定义原文的内容哈希
+     */
+    public static ReticleDefinition compile(String definitionJson, String hash) throws JSONException {
+        JSONObject json = new JSONObject(definitionJson);
+        int version = json.optInt("version", 0);
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new JSONException("不支持的准星定义版本: " + version);
+        }
+        String name = json.getString("name");
+
+        SightOverlayConfig style = SightDefaults.createDefaultConfig();
+        JSONObject styleJson = json.optJSONObject("style");
+        if (styleJson != null) {
+            style = SightOverlayConfig.fromJson(styleJson);
+        }
+        style.type = SightType.CUSTOM;
+
+        ReticleShapeList shapes = ReticleShapeList.fromJson(json.getJSONArray("shapes"));
+        int lineFloats = 0;
+        int dotFloats = 0;
+        for (int i = 0; i < shapes.size(); i++) {
+            switch (shapes.kindAt(i)) {
+                case ReticleShapeList.KIND_LINE:
+                    lineFloats += 4;
+                    break;
+                case ReticleShapeList.KIND_ARC:
+                    lineFloats += arcSegments(shapes.paramAt(i, 4)) * 4;
+                    break;
+                default:
+                    dotFloats += 3;
+                    break;
+            }
+        }
+
+        float[] lines = new float[lineFloats];
+        float[] dots = new float[dotFloats];
+        int li = 0;
+        int di = 0;
+        for (int i = 0; i < shapes.size(); i++) {
+            float a = shapes.paramAt(i, 0);
+            float b = shapes.paramAt(i, 1);
+            float c = shapes.paramAt(i, 2);
+            switch (shapes.kindAt(i)) {
+                case ReticleShapeList.KIND_LINE:
+                    lines[li++] = a;
+                    lines[li++] = b;
+                    lines[li++] = c;
+                    lines[li++] = shapes.paramAt(i, 3);
+                    break;
+                case ReticleShapeList.KIND_ARC:
+                    li = tessellateArc(lines, li, a, b, c, shapes.paramAt(i, 3), shapes.paramAt(i, 4));
+                    break;
+                default:
+                    dots[di++] = a;
+                    dots[di++] = b;
+                    dots[di++] = c;
+                    break;
+            }
+        }
+        return new ReticleDefinition(name, hash, style.toPacked(), lines, dots, shapes.getExtent());
+    }
+
+    private static int arcSegments(float sweep) {
+        return Math.max(1, (int) Math.ceil(Math.abs(sweep) / ARC_SEGMENT_DEGREES));
+    }
+
+    /**
+     * 将圆弧展开为折线段，角度与 Canvas.drawArc 一致（0° 指向右侧，顺时针为正）
+     */
+    private static int tessellateArc(float[] out, int index, float cx, float cy, float r, float start, float sweep) {
+        int segments = arcSegments(sweep);
+        double step = Math.toRadians(sweep) / segments;
+        double angle = Math.toRadians(start);
+        float prevX = cx + (float) (r * Math.cos(angle));
+        float prevY = cy + (float) (r * Math.sin(angle));
+        for (int s = 0; s < segments; s++) {
+            angle += step;
+            float x = cx + (float) (r * Math.cos(angle));
+            float y = cy + (float) (r * Math.sin(angle));
+            out[index++] = prevX;
+            out[index++] = prevY;
+            out[index++] = x;
+            out[index++] = y;
+            prevX = x;
+            prevY = y;
+        }
+        return index;
+    }
+}
+
+/**
+ * 准星库 - 管理已加载的准星定义，编译结果按内容哈希缓存到应用私有目录
+ * 命中缓存时直接读取二进制顶点数据，不再解析 JSON 或展开圆弧
+ */
+class ReticleLibrary {
+    private static final int CACHE_MAGIC = 0x5254434C; // "RTCL"
+    private static final int CACHE_VERSION = 1;
+    private static final String CACHE_DIR = "reticles";
+
+    private static volatile ReticleLibrary instance; // 双重检查锁定需要 volatile，首次访问可能来自多个线程
+
+    private final ConcurrentHashMap<String, ReticleDefinition> definitions = new ConcurrentHashMap<>();
+    private File cacheDir;
+
+    private ReticleLibrary() {
+    }
+
+    public static ReticleLibrary getInstance() {
+        if (instance == null) {
+            synchronized (ReticleLibrary.class) {
+                if (instance == null) {
+                    instance = new ReticleLibrary();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 设置编译缓存所在的应用私有目录
+     */
+    public synchronized void init(Context context) {
+        if (cacheDir == null) {
+            cacheDir = new File(context.getFilesDir(), CACHE_DIR);
+        }
+    }
+
+    public ReticleDefinition get(String name) {
+        return definitions.get(name);
+    }
+
+    public String[] getNames() {
+        return definitions.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * 加载一条准星定义，优先使用磁盘缓存
+     * @return 加载后的定义
+     */
+    public ReticleDefinition load(String definitionJson) throws JSONException {
+        String hash = contentHash(definitionJson);
+        ReticleDefinition definition = readCache(hash);
+        if (definition == null) {
+            definition = ReticleCompiler.compile(definitionJson, hash);
+            writeCache(definition);
+        }
+        definitions.put(definition.name, definition);
+        return definition;
+    }
+
+    /**
+     * 加载目录下所有 .json 准星定义，单条失败只记录日志
+     * @return 成功加载的数量
+     */
+    public int loadDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            Log.e("SightOverlay", "准星库目录不可读: " + directory);
+            return 0;
+        }
+        int loaded = 0;
+        for (File file : files) {
+            if (!file.getName().endsWith(".json")) {
+                continue;
+            }
+            try {
+                load(readText(file));
+                loaded++;
+            } catch (IOException | JSONException e) {
+                Log.e("SightOverlay", "加载准星定义失败: " + file.getName() + ", " + e.getMessage());
+            }
+        }
+        return loaded;
+    }
+
+    private static String readText(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+        byte[] buffer = new byte[8192];
+        InputStream in = new FileInputStream(file);
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * 定义原文的 SHA-256 十六进制摘要
+     */
+    static String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // 所有 Android 版本都提供 SHA-256 与 UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File cacheFile(String hash) {
+        return cacheDir != null ? new File(cacheDir, hash + ".bin") : null;
+    }
+
+    private ReticleDefinition readCache(String hash) {
+        File file = cacheFile(hash);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+                return null;
+            }
+            String name = in.readUTF();
+            long packedStyle = in.readLong();
+            float extent = in.readFloat();
+            float[] lines = readFloats(in);
+            float[] dots = readFloats(in);
+            return new ReticleDefinition(name, hash, packedStyle, lines, dots, extent);
+        } catch (IOException e) {
+            Log.e("SightOverlay", "读取准星编译缓存失败: " + e.getMessage());
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeCache(ReticleDefinition definition) {
+        File file = cacheFile(definition.hash);
+        if (file == null) {
+            return;
+        }
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            Log.e("SightOverlay", "创建准星缓存目录失败: " + parent);
+            return;
+        }
+        // 先写临时文件再重命名，避免进程中断留下不完整的缓存
+        File temp = new File(parent, definition.hash + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(CACHE_VERSION);
+            out.writeUTF(definition.name);
+            out.writeLong(definition.packedStyle);
+            out.writeFloat(definition.extent);
+            writeFloats(out, definition.lines);
+            writeFloats(out, definition.dots);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                Log.e("SightOverlay", "写入准星编译缓存失败: " + file);
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.e("SightOverlay", "写入准星编译缓存失败: " + e.getMessage());
+            temp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("缓存数据损坏");
+        }
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        out.writeInt(values.length);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
+
+/**
+ * 准星预设存储 - 应用私有目录下内存映射的二进制追加日志
+ * 预设与最近一次显示的配置以紧凑编码（SightOverlayConfig.toPacked）保存，init 时即可恢复，无需等待 JS 层
+ *
+ * 文件格式：头部 [魔数, 版本]，之后为顺序追加的记录 [载荷长度 n, 载荷（类型, 紧凑编码, 名称 UTF-8）, CRC32]
+ * 进程中断留下的不完整记录由长度与 CRC 识别并丢弃；失效记录多于有效记录时在后台线程整体重写（压缩）
+ * 最近一次配置只在显示与隐藏时记录，update 不写入存储
+ * custom 类型只保存样式，图形列表与多图层不进入紧凑编码
+ */
+class ReticlePresetStore {
+    private static final int MAGIC = 0x53505354; // "SPST"
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "sight_presets.bin";
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int COMPACT_MIN_DEAD = 256; // 失效记录达到此数量才考虑压缩
+    static final int MAX_NAME_BYTES = 255;
+    private static final int MIN_PAYLOAD = 9;        // 类型 1 字节 + 紧凑编码 8 字节
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final byte KIND_PUT = 1;         // 保存预设
+    static final byte KIND_DELETE = 2;      // 删除预设
+    static final byte KIND_LAST_SHOWN = 3;  // 最近一次配置，正在显示
+    static final byte KIND_LAST_HIDDEN = 4; // 最近一次配置，已隐藏
+    static final byte KIND_SETTING = 5;     // 设置项，名称为键
+
+    public static final String SETTING_AUTO_RESTORE = "autoRestore";
+
+    private static volatile ReticlePresetStore instance; // 双重检查锁定需要 volatile，首次访问可能来自多个线程
+
+    private final LinkedHashMap<String, Long> presets = new LinkedHashMap<>();
+    private final HashMap<String, Long> settings = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private File file;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private int recordCount;       // 文件中的记录总数（含失效记录）
+    private boolean compacting;    // 后台压缩进行中，期间不再发起新的压缩
+    private boolean hasLast;
+    private boolean lastShown;
+    private long lastPacked;
+
+    private ReticlePresetStore() {
+    }
+
+    public static ReticlePresetStore getInstance() {
+        if (instance == null) {
+            synchronized (ReticlePresetStore.class) {
+                if (instance == null) {
+                    instance = new ReticlePresetStore();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 打开（必要时创建）存储文件并重建内存索引，重复调用直接返回
+     * @return 是否可用
+     */
+    public synchronized boolean open(File directory) {
+        if (buffer != null) {
+            return true;
+        }
+        file = new File(directory, FILE_NAME);
+        try {
+            map(file);
+            return true;
+        } catch (IOException e) {
+            Log.e("SightOverlay", "打开预设存储失败: " + e.getMessage());
+            closeFile();
+            return false;
+        }
+    }
+
+    private void map(File target) throws IOException {
+        raf = new RandomAccessFile(target, "rw");
+        boolean fresh = raf.length() < HEADER_SIZE;
+        if (fresh) {
+            raf.setLength(INITIAL_CAPACITY);
+        }
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        if (!fresh && (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)) {
+            Log.e("SightOverlay", "预设存储格式不兼容，已重置");
+            fresh = true;
+            for (int i = 0; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        if (fresh) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        }
+        scan();
+    }
+
+    /**
+     * 顺序回放记录重建索引，遇到不完整或校验失败的记录即停止
+     */
+    private void scan() {
+        presets.clear();
+        settings.clear();
+        hasLast = false;
+        recordCount = 0;
+        int capacity = buffer.capacity();
+        int position = HEADER_SIZE;
+        byte[] payload = new byte[MIN_PAYLOAD + MAX_NAME_BYTES];
+        while (position + 4 <= capacity) {
+            int length = buffer.getInt(position);
+            if (length < MIN_PAYLOAD || length > payload.length || position + 8 + length > capacity) {
+                break;
+            }
+            buffer.position(position + 4);
+            buffer.get(payload, 0, length);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(position + 4 + length)) {
+                break;
+            }
+            apply(payload[0], ByteBuffer.wrap(payload, 1, 8).getLong(),
+                    new String(payload, MIN_PAYLOAD, length - MIN_PAYLOAD, UTF_8));
+            recordCount++;
+            position += 8 + length;
+        }
+        writePosition = position;
+        // 清除中断写入留下的残余字节，避免之后追加的短记录后面跟着旧数据
+        if (position + 4 <= capacity && buffer.getInt(position) != 0) {
+            for (int i = position; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private void apply(byte kind, long packed, String name) {
+        switch (kind) {
+            case KIND_PUT:
+                presets.put(name, packed);
+                break;
+            case KIND_DELETE:
+                presets.remove(name);
+                break;
+            case KIND_LAST_SHOWN:
+            case KIND_LAST_HIDDEN:
+                hasLast = true;
+                lastShown = kind == KIND_LAST_SHOWN;
+                lastPacked = packed;
+                break;
+            case KIND_SETTING:
+                settings.put(name, packed);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 追加一条记录并更新索引，必要时压缩
+     */
+    private boolean append(byte kind, String name, long packed) {
+        if (buffer == null) {
+            return false;
+        }
+        try {
+            appendRecord(kind, name, packed);
+        } catch (IOException e) {
+            Log.e("SightOverlay", "写入预设存储失败: " + e.getMessage());
+            return false;
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * 追加一条记录并更新索引，不检查压缩（调用方持有锁且存储已打开）
+     */
+    private void appendRecord(byte kind, String name, long packed) throws IOException {
+        byte[] record = encode(kind, name, packed);
+        ensureCapacity(writePosition + record.length);
+        buffer.position(writePosition);
+        buffer.put(record);
+        writePosition += record.length;
+        recordCount++;
+        apply(kind, packed, name);
+    }
+
+    private byte[] encode(byte kind, String name, long packed) {
+        byte[] nameBytes = name.getBytes(UTF_8);
+        int length = MIN_PAYLOAD + nameBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(8 + length);
+        record.putInt(length);
+        record.put(kind);
+        record.putLong(packed);
+        record.put(nameBytes);
+        crc.reset();
+        crc.update(record.array(), 4, length);
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    /**
+     * 容量不足时加倍扩展文件并重新映射
+     */
+    private void ensureCapacity(int required) throws IOException {
+        int capacity = buffer.capacity();
+        if (required <= capacity) {
+            return;
+        }
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        raf.setLength(capacity);
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private int liveRecordCount() {
+        return presets.size() + settings.size() + (hasLast ? 1 : 0);
+    }
+
+    /**
+     * 失效记录足够多时在后台线程压缩：调用方线程只在锁内生成有效记录的快照，写文件与 fsync 不占用调用方
+     */
+    private void compactIfNeeded() {
+        int live = liveRecordCount();
+        int dead = recordCount - live;
+        if (compacting || dead < COMPACT_MIN_DEAD || dead <= live) {
+            return;
+        }
+        compacting = true;
+        final byte[] snapshot = snapshotLiveRecords(live);
+        final int snapshotPosition = writePosition;
+        final int before = recordCount;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                compact(snapshot, snapshotPosition, before);
+            }
+        }, "SightOverlay.PresetCompact");
+        thread.start();
+    }
+
+    /**
+     * 按当前索引生成只含有效记录的完整文件内容
+     */
+    private byte[] snapshotLiveRecords(int live) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + live * 32);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        out.write(header.array(), 0, HEADER_SIZE);
+        for (Map.Entry<String, Long> entry : settings.entrySet()) {
+            writeRecord(out, KIND_SETTING, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : presets.entrySet()) {
+            writeRecord(out, KIND_PUT, entry.getKey(), entry.getValue());
+        }
+        if (hasLast) {
+            writeRecord(out, lastShown ? KIND_LAST_SHOWN : KIND_LAST_HIDDEN, "", lastPacked);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 压缩（后台线程）：快照写入临时文件并 fsync 后，在锁内补上快照之后追加的记录再重命名替换
+     * 先写临时文件再重命名，中断时旧文件仍完整
+     */
+    private void compact(byte[] snapshot, int snapshotPosition, int before) {
+        File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        FileOutputStream stream = null;
+        try {
+            stream = new FileOutputStream(temp);
+            stream.write(snapshot);
+            stream.getFD().sync();
+            synchronized (this) {
+                if (buffer == null) {
+                    throw new IOException("存储未打开");
+                }
+                // 快照之后追加的记录按原样接在有效记录之后，回放结果与当前索引一致
+                int tail = writePosition - snapshotPosition;
+                if (tail > 0) {
+                    byte[] records = new byte[tail];
+                    buffer.position(snapshotPosition);
+                    buffer.get(records);
+                    stream.write(records);
+                }
+                stream.close();
+                stream = null;
+                closeFile();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("重命名失败: " + temp);
+                }
+                map(file);
+                Log.i("SightOverlay", "预设存储已压缩: " + before + " -> " + recordCount + " 条记录");
+            }
+        } catch (IOException e) {
+            Log.e("SightOverlay", "压缩预设存储失败: " + e.getMessage());
+            temp.delete();
+            synchronized (this) {
+                if (buffer == null) {
+                    try {
+                        map(file);
+                    } catch (IOException reopen) {
+                        Log.e("SightOverlay", "重新打开预设存储失败: " + reopen.getMessage());
+                        closeFile();
+                    }
+                }
+            }
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    private void writeRecord(ByteArrayOutputStream out, byte kind, String name, long packed) {
+        byte[] record = encode(kind, name, packed);
+        out.write(record, 0, record.length);
+    }
+
+    private void closeFile() {
+        buffer = null;
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+            }
+            raf = null;
+        }
+    }
+
+    /**
+     * 保存（或覆盖）预设
+     * @return 名称无效或写入失败时返回 false
+     */
+    public synchronized boolean putPreset(String name, long packed) {
+        if (!isValidName(name)) {
+            return false;
+        }
+        Long existing = presets.get(name);
+        if (existing != null && existing == packed) {
+            return true;
+        }
+        return append(KIND_PUT, name, packed);
+    }
+
+    /**
+     * 批量保存预设（导入用），整批只持有一次锁且不触发压缩，全部导入后由调用方调用一次 compactIfNeeded
+     * 与已保存内容相同的条目不写入
+     * @param names 已通过 isValidName 校验的名称
+     * @throws IOException 存储未打开或写入失败，失败前的条目已写入
+     */
+    public synchronized void putPresets(String[] names, long[] packed, int count) throws IOException {
+        if (buffer == null) {
+            throw new IOException("预设存储未打开");
+        }
+        for (int i = 0; i < count; i++) {
+            Long existing = presets.get(names[i]);
+            if (existing == null || existing != packed[i]) {
+                appendRecord(KIND_PUT, names[i], packed[i]);
+            }
+        }
+    }
+
+    /**
+     * 失效记录足够多时发起后台压缩，供批量写入结束后调用
+     */
+    public synchronized void requestCompaction() {
+        if (buffer != null) {
+            compactIfNeeded();
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return buffer != null;
+    }
+
+    /**
+     * 预设名称非空且 UTF-8 编码不超过 MAX_NAME_BYTES 字节
+     */
+    static boolean isValidName(String name) {
+        return name != null && !name.isEmpty() && name.getBytes(UTF_8).length <= MAX_NAME_BYTES;
+    }
+
+    /**
+     * 删除预设
+     * @return 预设是否存在
+     */
+    public synchronized boolean deletePreset(String name) {
+        if (!presets.containsKey(name)) {
+            return false;
+        }
+        return append(KIND_DELETE, name, 0);
+    }
+
+    /**
+     * @return 预设的紧凑编码，不存在时返回 null
+     */
+    public synchronized Long getPreset(String name) {
+        return presets.get(name);
+    }
+
+    /**
+     * 按保存顺序返回所有预设的副本
+     */
+    public synchronized LinkedHashMap<String, Long> getPresets() {
+        return new LinkedHashMap<>(presets);
+    }
+
+    /**
+     * 记录最近一次配置，与当前记录相同时不写入
+     */
+    public synchronized void setLast(long packed, boolean shown) {
+        if (hasLast && lastPacked == packed && lastShown == shown) {
+            return;
+        }
+        append(shown ? KIND_LAST_SHOWN : KIND_LAST_HIDDEN, "", packed);
+    }
+
+    public synchronized boolean hasLast() {
+        return hasLast;
+    }
+
+    public synchronized boolean isLastShown() {
+        return hasLast && lastShown;
+    }
+
+    public synchronized long getLastPacked() {
+        return lastPacked;
+    }
+
+    public synchronized long getSetting(String key, long defaultValue) {
+        Long value = settings.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public synchronized void putSetting(String key, long value) {
+        Long existing = settings.get(key);
+        if (existing == null || existing != value) {
+            append(KIND_SETTING, key, value);
+        }
+    }
+}
+
+/**
+ * 准星预设批量导入导出 - 以 JsonReader / JsonWriter 流式读写预设包，逐条处理，内存占用与条目数无关
+ * 导入时按 getConfigMetadata 的取值范围逐条校验，单条错误只记录不中断；JSON 语法错误终止导入
+ * 校验通过的条目按批写入存储（每批一次加锁），导入结束后至多压缩一次；存储未打开或写入失败同样终止导入
+ * 可在任意后台线程同步执行（run），也可用 start 启动独立线程，通过 Listener 或状态快照获取进度
+ *
+ * 预设包格式：{"version": 1, "presets": [{"name": ..., "type": ..., "color": ..., ...}, ...]}，也接受直接的条目数组
+ */
+class ReticlePresetTransfer {
+    public static final int FORMAT_VERSION = 1;
+    private static final int PROGRESS_INTERVAL = 100;   // 每处理多少条回调一次进度
+    private static final int WRITE_BATCH = 64;          // 每批写入存储的条目数，整批只持有一次存储锁
+    private static final int MAX_REPORTED_ERRORS = 100; // 保留的条目错误上限，超出只计数
+
+    /**
+     * 进度回调，在执行传输的线程上调用
+     */
+    interface Listener {
+        void onProgress(ReticlePresetTransfer transfer);
+
+        void onComplete(ReticlePresetTransfer transfer);
+    }
+
+    /**
+     * 单条目错误
+     */
+    static final class EntryError {
+        final int index;
+        final String name;
+        final String message;
+
+        EntryError(int index, String name, String message) {
+            this.index = index;
+            this.name = name;
+            this.message = message;
+        }
+    }
+
+    /**
+     * 统计已读取字节数的输入流，用于按文件大小估算进度
+     */
+    private final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesProcessed++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                bytesProcessed += read;
+            }
+            return read;
+        }
+    }
+
+    private final boolean importing;
+    private final File file;
+    private final Listener listener;
+    private final List<EntryError> errors = new ArrayList<>();
+    private final String[] batchNames = new String[WRITE_BATCH];
+    private final long[] batchPacked = new long[WRITE_BATCH];
+    private int batchSize;
+    private volatile int processed;
+    private volatile int succeeded;
+    private volatile int failed;
+    private volatile long bytesProcessed;
+    private volatile long totalBytes;
+    private volatile boolean running;
+    private volatile boolean finished;
+    private volatile boolean cancelled;
+    private volatile String fatalError;
+
+    private ReticlePresetTransfer(boolean importing, File file, Listener listener) {
+        this.importing = importing;
+        this.file = file;
+        this.listener = listener;
+    }
+
+    /**
+     * 创建从文件导入到 ReticlePresetStore 的任务，同名预设被覆盖
+     */
+    public static ReticlePresetTransfer importFrom(File file, Listener listener) {
+        return new ReticlePresetTransfer(true, file, listener);
+    }
+
+    /**
+     * 创建把 ReticlePresetStore 中所有预设导出到文件的任务
+     */
+    public static ReticlePresetTransfer exportTo(File file, Listener listener) {
+        return new ReticlePresetTransfer(false, file, listener);
+    }
+
+    /**
+     * 在新的后台线程上执行
+     */
+    public void start() {
+        running = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                ReticlePresetTransfer.this.run();
+            }
+        }, "SightOverlay.PresetTransfer");
+        thread.start();
+    }
+
+    /**
+     * 在当前线程同步执行，不可在主线程调用
+     */
+    public void run() {
+        running = true;
+        long start = System.nanoTime();
+        try {
+            if (importing) {
+                runImport();
+            } else {
+                runExport();
+            }
+        } catch (IOException | RuntimeException e) {
+            fatalError = e.getMessage() != null ? e.getMessage() : e.toString();
+            Log.e("SightOverlay", (importing ? "导入" : "导出") + "预设失败: " + fatalError);
+        } finally {
+            running = false;
+            finished = true;
+        }
+        Log.i("SightOverlay", (importing ? "导入" : "导出") + "预设完成: " + succeeded + " 成功, " + failed
+                + " 失败, 耗时 " + (System.nanoTime() - start) / 1000000 + "ms");
+        if (listener != null) {
+            listener.onComplete(this);
+        }
+    }
+
+    /**
+     * 请求取消，当前条目处理完后停止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runImport() throws IOException {
+        ReticlePresetStore store = ReticlePresetStore.getInstance();
+        if (!store.isOpen()) {
+            throw new IOException("预设存储未打开");
+        }
+        try {
+            readPackage(store);
+        } finally {
+            // 整个导入只在结束时检查一次压缩
+            store.requestCompaction();
+        }
+    }
+
+    private void readPackage(ReticlePresetStore store) throws IOException {
+        totalBytes = file.length();
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                new CountingInputStream(new BufferedInputStream(new FileInputStream(file))), "UTF-8"));
+        try {
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_ARRAY) {
+                readEntries(reader, store);
+            } else if (token == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext() && !cancelled) {
+                    String key = reader.nextName();
+                    if ("version".equals(key)) {
+                        int version = reader.nextInt();
+                        if (version > FORMAT_VERSION) {
+                            throw new IOException("不支持的预设包版本: " + version);
+                        }
+                    } else if ("presets".equals(key)) {
+                        readEntries(reader, store);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+            } else {
+                throw new IOException("预设包应为 JSON 对象或数组");
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void readEntries(JsonReader reader, ReticlePresetStore store) throws IOException {
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (cancelled) {
+                    break;
+                }
+                int index = processed;
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    recordError(index, null, "条目应为 JSON 对象");
+                } else {
+                    readEntry(reader, store, index);
+                }
+                processed = index + 1;
+                if (listener != null && processed % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(this);
+                }
+            }
+            if (!cancelled) {
+                reader.endArray();
+            }
+        } catch (IOException e) {
+            // 语法错误之前已校验通过的条目照常写入
+            flushBatch(store);
+            throw e;
+        }
+        flushBatch(store);
+    }
+
+    /**
+     * 把已校验的条目整批写入存储；写入失败说明存储不可用，作为致命错误终止导入
+     */
+    private void flushBatch(ReticlePresetStore store) throws IOException {
+        if (batchSize == 0) {
+            return;
+        }
+        int count = batchSize;
+        batchSize = 0;
+        try {
+            store.putPresets(batchNames, batchPacked, count);
+        } catch (IOException e) {
+            throw new IOException("写入预设存储失败: " + e.getMessage());
+        }
+        succeeded += count;
+        Arrays.fill(batchNames, 0, count, null);
+    }
+
+    /**
+     * 读取并校验一个条目，字段类型错误时跳过该字段的值，保证读取位置与流同步
+     */
+    private void readEntry(JsonReader reader, ReticlePresetStore store, int index) throws IOException {
+        String name = null;
+        String type = SightDefaults.DEFAULT_TYPE;
+        String color = SightDefaults.DEFAULT_COLOR;
+        double size = SightDefaults.DEFAULT_SIZE;
+        double thickness = SightDefaults.DEFAULT_THICKNESS;
+        boolean showDot = SightDefaults.DEFAULT_SHOW_DOT;
+        double opacity = SightDefaults.DEFAULT_OPACITY;
+        String error = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            if ("name".equals(key) || "type".equals(key) || "color".equals(key)) {
+                if (token != JsonToken.STRING) {
+                    reader.skipValue();
+                    error = error != null ? error : "字段 " + key + " 应为字符串";
+                    continue;
+                }
+                String value = reader.nextString();
+                if ("name".equals(key)) {
+                    name = value;
+                } else if ("type".equals(key)) {
+                    type = value;
+                } else {
+                    color = value;
+                }
+            } else if ("size".equals(key) || "thickness".equals(key) || "opacity".equals(key)) {
+                if (token != JsonToken.NUMBER) {
+                    reader.skipValue();
+                    error = error != null ? error : "字段 " + key + " 应为数字";
+                    continue;
+                }
+                double value = reader.nextDouble();
+                if ("size".equals(key)) {
+                    size = value;
+                } else if ("thickness".equals(key)) {
+                    thickness = value;
+                } else {
+                    opacity = value;
+                }
+            } else if ("showDot".equals(key)) {
+                if (token != JsonToken.BOOLEAN) {
+                    reader.skipValue();
+                    error = error != null ? error : "字段 showDot 应为布尔值";
+                    continue;
+                }
+                showDot = reader.nextBoolean();
+            } else {
+                // 图形列表、图层等不进入紧凑编码的字段与未知字段一并跳过
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (error == null) {
+            error = validate(name, type, color, size, thickness, opacity);
+        }
+        if (error != null) {
+            recordError(index, name, error);
+            return;
+        }
+        SightOverlayConfig config = new SightOverlayConfig(type, color, size, thickness, showDot, opacity);
+        batchNames[batchSize] = name;
+        batchPacked[batchSize] = config.toPacked();
+        batchSize++;
+        if (batchSize == WRITE_BATCH) {
+            flushBatch(store);
+        }
+    }
+
+    /**
+     * 按 getConfigMetadata 描述的取值范围校验
+     * @return 错误描述，合法时返回 null
+     */
+    static String validate(String name, String type, String color, double size, double thickness, double opacity) {
+        if (name == null || name.isEmpty()) {
+            return "缺少 name";
+        }
+        if (!ReticlePresetStore.isValidName(name)) {
+            return "name 超过 " + ReticlePresetStore.MAX_NAME_BYTES + " 字节";
+        }
+        if (!SightType.isSupported(type)) {
+            return "不支持的准星类型: " + type;
+        }
+        if (!isHexColor(color)) {
+            return "颜色格式应为 #RRGGBB: " + color;
+        }
+        if (!(size >= SightDefaults.MIN_SIZE && size <= SightDefaults.MAX_SIZE)) {
+            return "size 超出范围: " + size;
+        }
+        if (!(thickness >= SightDefaults.MIN_THICKNESS && thickness <= SightDefaults.MAX_THICKNESS)) {
+            return "thickness 超出范围: " + thickness;
+        }
+        if (!(opacity >= SightDefaults.MIN_OPACITY && opacity <= SightDefaults.MAX_OPACITY)) {
+            return "opacity 超出范围: " + opacity;
+        }
+        return null;
+    }
+
+    private static boolean isHexColor(String color) {
+        if (color == null || color.length() != 7 || color.charAt(0) != '#') {
+            return false;
+        }
+        for (int i = 1; i < 7; i++) {
+            if (Character.digit(color.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recordError(int index, String name, String message) {
+        failed++;
+        synchronized (errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new EntryError(index, name, message));
+            }
+        }
+    }
+
+    private void runExport() throws IOException {
+        LinkedHashMap<String, Long> presets = ReticlePresetStore.getInstance().getPresets();
+        totalBytes = -1;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录: " + parent);
+        }
+        // 先写临时文件再重命名，中断时不留下半个预设包
+        File temp = new File(file.getPath() + ".tmp");
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(temp)), "UTF-8"));
+        boolean complete = false;
+        try {
+            writer.beginObject();
+            writer.name("version").value(FORMAT_VERSION);
+            writer.name("presets").beginArray();
+            for (Map.Entry<String, Long> entry : presets.entrySet()) {
+                if (cancelled) {
+                    break;
+                }
+                SightOverlayConfig config = SightOverlayConfig.fromPacked(entry.getValue());
+                writer.beginObject();
+                writer.name("name").value(entry.getKey());
+                writer.name("type").value(config.type);
+                writer.name("color").value(config.color);
+                writer.name("size").value(config.size);
+                writer.name("thickness").value(config.thickness);
+                writer.name("showDot").value(config.showDot);
+                writer.name("opacity").value(config.opacity);
+                writer.endObject();
+                processed++;
+                succeeded++;
+                if (listener != null && processed % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(this);
+                }
+            }
+            writer.endArray();
+            writer.endObject();
+            complete = !cancelled;
+        } finally {
+            writer.close();
+            if (!complete || !temp.renameTo(file)) {
+                temp.delete();
+                if (complete) {
+                    throw new IOException("写入预设包失败: " + file);
+                }
+            }
+        }
+        bytesProcessed = file.length();
+        totalBytes = bytesProcessed;
+    }
+
+    /**
+     * 状态快照
+     * @return mode、running、finished、cancelled、processed、succeeded、failed、bytesProcessed、totalBytes、
+     *         errors（[{index, name, message}]，最多保留前 100 条）与 fatal（终止原因）
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject status = new JSONObject();
+        status.put("mode", importing ? "import" : "export");
+        status.put("running", running);
+        status.put("finished", finished);
+        status.put("cancelled", cancelled);
+        status.put("processed", processed);
+        status.put("succeeded", succeeded);
+        status.put("failed", failed);
+        status.put("bytesProcessed", bytesProcessed);
+        status.put("totalBytes", totalBytes);
+        JSONArray list = new JSONArray();
+        synchronized (errors) {
+            for (EntryError error : errors) {
+                JSONObject item = new JSONObject();
+                item.put("index", error.index);
+                if (error.name != null) {
+                    item.put("name", error.name);
+                }
+                item.put("message", error.message);
+                list.put(item);
+            }
+        }
+        status.put("errors", list);
+        if (fatalError != null) {
+            status.put("fatal", fatalError);
+        }
+        return status;
+    }
+}
+
+/**
+ * 准星位图缓存 - 将静态准星预先栅格化为位图，按配置键做 LRU 复用
+ * 透明度不参与缓存键，由视图透明度统一控制
+ */
+class ReticleRasterCache {
+    private static final int MAX_CACHE_BYTES = 8 * 1024 * 1024; // 最多缓存 8MB 位图
+
+    private static volatile ReticleRasterCache instance; // 双重检查锁定需要 volatile，首次访问可能来自多个线程
+
+    private final LruCache<Key, Bitmap> cache;
+    private final Paint paint;
+    private final Paint dotPaint;
+    private final ReticleDrawScratch scratch = new ReticleDrawScratch(); // 栅格化在 obtain 的锁内进行，可复用
+
+    /**
+     * 缓存键 - 影响栅格结果的配置字段
+     */
+    static final class Key {
+        private final int typeId;
+        private final int rgb;
+        private final double size;
+        private final double thickness;
+        private final boolean showDot;
+        private final float density;
+        private final ReticleShapeList shapes;
+        private final ReticleDefinition reticle;
+        private final ReticleLayerList layers;
+
+        Key(SightRenderState state) {
+            this.typeId = state.typeId;
+            this.rgb = state.color;
+            this.size = state.config.size;
+            this.thickness = state.config.thickness;
+            this.showDot = state.config.showDot;
+            this.density = state.density;
+            this.shapes = state.config.shapes;
+            this.reticle = state.config.reticle;
+            this.layers = state.config.layers;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return rgb == other.rgb
+                    && size == other.size
+                    && thickness == other.thickness
+                    && showDot == other.showDot
+                    && density == other.density
+                    && typeId == other.typeId
+                    && reticle == other.reticle
+                    && (shapes == null ? other.shapes == null : shapes.equals(other.shapes))
+                    && (layers == null ? other.layers == null : layers.equals(other.layers));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = typeId;
+            result = 31 * result + rgb;
+            long bits = Double.doubleToLongBits(size);
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            bits = Double.doubleToLongBits(thickness);
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            result = 31 * result + (showDot ? 1 : 0);
+            result = 31 * result + Float.floatToIntBits(density);
+            result = 31 * result + (shapes != null ? shapes.hashCode() : 0);
+            result = 31 * result + (reticle != null ? reticle.hashCode() : 0);
+            result = 31 * result + (layers != null ? layers.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private ReticleRasterCache() {
+        cache = new LruCache<Key, Bitmap>(MAX_CACHE_BYTES) {
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap) {
+                // 硬件位图不报告真实内存占用，按 ARGB_8888 估算
+                return bitmap.getWidth() * bitmap.getHeight() * 4;
+            }
+        };
+
+        paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+
+        dotPaint = new Paint();
+        dotPaint.setAntiAlias(true);
+        dotPaint.setStyle(Paint.Style.FILL);
+    }
+
+    public static ReticleRasterCache getInstance() {
+        if (instance == null) {
+            synchronized (ReticleRasterCache.class) {
+                if (instance == null) {
+                    instance = new ReticleRasterCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 是否可以栅格化（象限准星尺寸依赖屏幕，不缓存）
+     */
+    public static boolean isCacheable(SightRenderState state) {
+        return state.typeId != SightType.ID_QUADRANT && !state.fullScreen;
+    }
+
+    /**
+     * 获取配置对应的位图，未命中时绘制并缓存
+     * 位图以准星中心为中心，边长为 2 * boundsRadius
+     */
+    public synchronized Bitmap obtain(SightRenderState state) {
+        Key key = new Key(state);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = rasterize(state);
+            if (bitmap != null) {
+                cache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        cache.evictAll();
+    }
+
+    private Bitmap rasterize(SightRenderState state) {
+        int side = ReticleGeometry.windowSide(state.boundsRadius);
+        if (side <= 0) {
+            return null;
+        }
+        try {
+            Bitmap bitmap = Bitmap.createBitmap(side, side, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+
+            paint.setColor(state.color);
+            paint.setStrokeWidth(state.strokeWidth);
+            dotPaint.setColor(state.color);
+
+            canvas.translate(side / 2f, side / 2f);
+            ReticlePainter.drawReticle(canvas, state, paint, dotPaint, scratch, side / 2f, side / 2f);
+
+            // Android 8.0+ 转为硬件位图，绘制时无需再上传纹理
+            if (Build.VERSION.SDK_INT >= 26) {
+                Bitmap hardware = bitmap.copy(Bitmap.Config.HARDWARE, false);
+                if (hardware != null) {
+                    bitmap.recycle();
+                    return hardware;
+                }
+            }
+            bitmap.prepareToDraw();
+            return bitmap;
+        } catch (OutOfMemoryError e) {
+            Log.e("SightOverlay", "准星栅格化失败，内存不足: " + side + "x" + side);
+            return null;
+        }
+    }
+}
+
+/**
+ * 准星绘制器 - 持有画笔、绘制状态与缓存位图，供各渲染后端共用
+ * 非线程安全，只能在所属后端的绘制线程上使用
+ */
+class ReticlePainter {
+    // 视图在窗口中承担的部分
+    public static final int PART_FULL = 0;       // 完整准星，窗口紧贴准星外接正方形
+    public static final int PART_HORIZONTAL = 1; // 象限准星水平细条（含中心及中心点）
+    public static final int PART_VERTICAL = 2;   // 象限准星竖直细条（跳过水平细条覆盖的中心段）
+
+    private final Paint paint;
+    private final Paint dotPaint;
+    private final Paint rasterPaint;
+    private final float[] verticalLines = new float[8]; // 竖直细条的顶点缓冲，x 坐标恒为 0
+    private final ReticleDrawScratch scratch = new ReticleDrawScratch(); // 绘制时的可写状态，编译结果共享不可写
+    private SightRenderState state;
+    private Bitmap raster;
+    private boolean rasterCacheEnabled = true;
+    private int part = PART_FULL;
+    private int paintAlpha = 255;
+    private ReticleAnimator animator; // 可为空，仅完整准星应用动画
+
+    ReticlePainter() {
+        paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+
+        dotPaint = new Paint();
+        dotPaint.setAntiAlias(true);
+        dotPaint.setStyle(Paint.Style.FILL);
+
+        rasterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    /**
+     * 应用新的绘制状态，画笔属性只随状态变化，在此一次性设置
+     */
+    public void setState(SightRenderState state) {
+        this.state = state;
+        paint.setColor(state.color);
+        paint.setStrokeWidth(state.strokeWidth);
+        dotPaint.setColor(state.color);
+        applyPaintAlpha();
+        updateRaster();
+    }
+
+    public SightRenderState getState() {
+        return state;
+    }
+
+    public void setPart(int part) {
+        this.part = part;
+    }
+
+    public void setAnimator(ReticleAnimator animator) {
+        this.animator = animator;
+    }
+
+    /**
+     * 设置绘制时附加的透明度（无法使用 View.setAlpha 的后端使用）
+     */
+    public void setPaintAlpha(int alpha) {
+        this.paintAlpha = alpha;
+        applyPaintAlpha();
+    }
+
+    private void applyPaintAlpha() {
+        paint.setAlpha(paintAlpha);
+        dotPaint.setAlpha(paintAlpha);
+        rasterPaint.setAlpha(paintAlpha);
+    }
+
+    public void setRasterCacheEnabled(boolean enabled) {
+        if (this.rasterCacheEnabled != enabled) {
+            this.rasterCacheEnabled = enabled;
+            updateRaster();
+        }
+    }
+
+    private void updateRaster() {
+        if (rasterCacheEnabled && state != null && ReticleRasterCache.isCacheable(state)) {
+            raster = ReticleRasterCache.getInstance().obtain(state);
+        } else {
+            raster = null;
+        }
+    }
+
+    /**
+     * 是否只贴一张缓存位图：无叠加图层的完整准星且命中位图缓存，中心点呼吸时会回退矢量绘制不在此列
+     * 矢量绘制的各图元（中心点与十字、圆环，叠加图层之间）可能覆盖同一像素
+     */
+    public boolean isSingleBitmapBlit() {
+        SightRenderState current = state;
+        if (raster == null || current == null || part != PART_FULL || current.layers != null) {
+            return false;
+        }
+        ReticleAnimator anim = animator;
+        return anim == null || (anim.getMode() & ReticleAnimator.ANIM_BREATHE) == 0
+                || current.typeId == SightType.ID_DOT;
+    }
+
+    /**
+     * 在给定尺寸的画布中心绘制准星
+     */
+    public void draw(Canvas canvas, float width, float height) {
+        SightRenderState current = state;
+        if (current == null) {
+            return;
+        }
+
+        float halfWidth = width / 2f;
+        float halfHeight = height / 2f;
+
+        // 平移到中心点，后续坐标均相对于中心
+        int saveCount = canvas.save();
+        canvas.translate(halfWidth, halfHeight);
+
+        if (part == PART_VERTICAL) {
+            drawQuadrantVertical(canvas, halfHeight, current.stripHalfThickness);
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        // 动画以画布变换实现，预编译的几何与缓存位图保持不变
+        float dotScale = 1f;
+        ReticleAnimator anim = animator;
+        if (anim != null && anim.getMode() != ReticleAnimator.ANIM_NONE) {
+            canvas.rotate(anim.getRotation());
+            float scale = anim.getPulseScale();
+            if (current.typeId == SightType.ID_DOT) {
+                scale *= anim.getDotScale();
+            } else {
+                dotScale = anim.getDotScale();
+            }
+            canvas.scale(scale, scale);
+        }
+
+        Bitmap bitmap = raster;
+        // 硬件位图只能绘制到硬件加速画布上，否则回退到矢量绘制；中心点呼吸时位图中的中心点无法单独缩放
+        if (bitmap != null && dotScale == 1f
+                && (canvas.isHardwareAccelerated() || bitmap.getConfig() != Bitmap.Config.HARDWARE)) {
+            float half = bitmap.getWidth() / 2f;
+            canvas.drawBitmap(bitmap, -half, -half, rasterPaint);
+        } else if (dotScale == 1f) {
+            drawReticle(canvas, current, paint, dotPaint, scratch, halfWidth, halfHeight);
+        } else {
+            current.renderer.draw(canvas, current, paint, dotPaint, scratch, halfWidth, halfHeight);
+            if (current.config.showDot) {
+                canvas.drawCircle(0, 0, current.dotSizePx * dotScale, dotPaint);
+            }
+            drawOverlayLayers(canvas, current, paint, dotPaint, scratch, halfWidth, halfHeight);
+        }
+
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 按绘制状态绘制准星，画布原点需已平移到准星中心
+     */
+    static void drawReticle(Canvas canvas, SightRenderState state, Paint paint, Paint dotPaint, ReticleDrawScratch scratch,
+                            float halfWidth, float halfHeight) {
+        drawLayer(canvas, state, paint, dotPaint, scratch, halfWidth, halfHeight);
+        drawOverlayLayers(canvas, state, paint, dotPaint, scratch, halfWidth, halfHeight);
+    }
+
+    /**
+     * 绘制单个图层（主体 + 中心点）
+     */
+    private static void drawLayer(Canvas canvas, SightRenderState state, Paint paint, Paint dotPaint, ReticleDrawScratch scratch,
+                                  float halfWidth, float halfHeight) {
+        // 绘制器已在编译绘制状态时按类型序号查表确定
+        state.renderer.draw(canvas, state, paint, dotPaint, scratch, halfWidth, halfHeight);
+
+        // 绘制中心点（dot类型除外）
+        if (state.config.showDot && state.typeId != SightType.ID_DOT) {
+            canvas.drawCircle(0, 0, state.dotSizePx, dotPaint);
+        }
+    }
+
+    /**
+     * 依次绘制叠加图层，画笔颜色与线宽按图层临时切换，结束后恢复为基础图层的设置
+     */
+    static void drawOverlayLayers(Canvas canvas, SightRenderState state, Paint paint, Paint dotPaint, ReticleDrawScratch scratch,
+                                  float halfWidth, float halfHeight) {
+        SightRenderState[] layers = state.layers;
+        if (layers == null) {
+            return;
+        }
+        int baseAlpha = paint.getAlpha();
+        for (int i = 0; i < layers.length; i++) {
+            SightRenderState layer = layers[i];
+            float dx = state.layerOffsets[i * 2];
+            float dy = state.layerOffsets[i * 2 + 1];
+            int alpha = baseAlpha * state.layerAlphas[i] / 255;
+            paint.setColor(layer.color);
+            paint.setAlpha(alpha);
+            paint.setStrokeWidth(layer.strokeWidth);
+            dotPaint.setColor(layer.color);
+            dotPaint.setAlpha(alpha);
+            canvas.translate(dx, dy);
+            // 偏移后的象限准星仍需延伸到窗口边缘
+            drawLayer(canvas, layer, paint, dotPaint, scratch, halfWidth + Math.abs(dx), halfHeight + Math.abs(dy));
+            canvas.translate(-dx, -dy);
+        }
+        paint.setColor(state.color);
+        paint.setAlpha(baseAlpha);
+        paint.setStrokeWidth(state.strokeWidth);
+        dotPaint.setColor(state.color);
+        dotPaint.setAlpha(baseAlpha);
+    }
+
+    /**
+     * 绘制象限准星竖直细条，中心段由水平细条绘制，此处跳过避免重复叠加透明度
+     */
+    private void drawQuadrantVertical(Canvas canvas, float halfHeight, float skip) {
+        float[] lines = verticalLines;
+        // 上方垂直线
+        lines[1] = -skip;
+        lines[3] = -halfHeight;
+        // 下方垂直线
+        lines[5] = skip;
+        lines[7] = halfHeight;
+        canvas.drawLines(lines, paint);
+    }
+
+    /**
+     * 根据准星几何范围计算窗口宽度
+     */
+    static int windowWidth(SightRenderState state, int part, int screenWidth, ReticleAnimator animator) {
+        if (state.fullScreen) {
+            return screenWidth;
+        }
+        switch (part) {
+            case PART_HORIZONTAL:
+                return screenWidth;
+            case PART_VERTICAL:
+                return state.lineHalfThickness * 2;
+            default:
+                return ReticleGeometry.windowSide(boundsRadius(state, animator));
+        }
+    }
+
+    /**
+     * 根据准星几何范围计算窗口高度
+     */
+    static int windowHeight(SightRenderState state, int part, int screenHeight, ReticleAnimator animator) {
+        if (state.fullScreen) {
+            return screenHeight;
+        }
+        switch (part) {
+            case PART_HORIZONTAL:
+                return state.stripHalfThickness * 2;
+            case PART_VERTICAL:
+                return screenHeight;
+            default:
+                return ReticleGeometry.windowSide(boundsRadius(state, animator));
+        }
+    }
+
+    private static float boundsRadius(SightRenderState state, ReticleAnimator animator) {
+        return animator != null ? animator.getBoundsRadius(state) : state.boundsRadius;
+    }
+}
+
+/**
+ * 悬浮窗准星宿主 - 各渲染后端的视图实现，所有方法在主线程调用
+ */
+interface OverlayHost {
+
+    View getView();
+
+    void setConfig(SightOverlayConfig config);
+
+    SightOverlayConfig getConfig();
+
+    SightRenderState getRenderState();
+
+    /**
+     * 设置视图承担的部分（ReticlePainter.PART_*）
+     */
+    void setPart(int part);
+
+    int getPart();
+
+    void setRasterCacheEnabled(boolean enabled);
+
+    /**
+     * 设置动画模式（ReticleAnimator.ANIM_*）与帧率上限，模式变化可能改变窗口尺寸
+     */
+    void setAnimation(int mode, int frameRateCap);
+
+    /**
+     * 根据准星几何范围计算窗口宽度
+     */
+    int getWindowWidth(int screenWidth);
+
+    /**
+     * 根据准星几何范围计算窗口高度
+     */
+    int getWindowHeight(int screenHeight);
+
+    /**
+     * 切换显示/隐藏，窗口保持附加，配置、绘制状态与位图缓存保留
+     * @param requestNanos 切换请求时刻（System.nanoTime），显示后首帧绘制时记录切换延迟；0 表示不记录
+     */
+    void setShown(boolean shown, long requestNanos);
+
+    /**
+     * 窗口移除后释放后端资源
+     */
+    void release();
+}
+
+/**
+ * 悬浮窗视图 - 在主线程 onDraw 中绘制准星（默认后端）
+ */
+class OverlayView extends View implements OverlayHost {
+    private final ReticlePainter painter = new ReticlePainter();
+    private final ReticleAnimator animator;
+    private SightOverlayConfig config;
+    private SightRenderState renderState;
+    private int part = ReticlePainter.PART_FULL;
+    private int animationMode = ReticleAnimator.ANIM_NONE; // 请求的动画模式
+    private boolean shown = true;
+    private long toggleRequestNanos; // 待记录的切换请求时刻，0 表示无
+
+    public OverlayView(Context context) {
+        super(context);
+        animator = new ReticleAnimator(new ReticleAnimator.Target() {
+            @Override
+            public void onAnimationFrame() {
+                invalidate();
+            }
+        });
+        painter.setAnimator(animator);
+    }
+
+    @Override
+    public View getView() {
+        return this;
+    }
+
+    @Override
+    public void setConfig(SightOverlayConfig config) {
+        SightOverlayConfig previous = this.config;
+        int changes = config.diff(previous);
+        this.config = config;
+        if (changes == 0) {
+            return;
+        }
+
+        // 透明度通过视图属性实现，无需重绘
+        if ((changes & SightOverlayConfig.CHANGE_OPACITY) != 0) {
+            setAlpha((float) config.opacity);
+        }
+        if ((changes & ~SightOverlayConfig.CHANGE_OPACITY) == 0) {
+            return;
+        }
+
+        this.renderState = new SightRenderState(config, getResources().getDisplayMetrics().density, renderState);
+        painter.setState(renderState);
+        applyAnimationMode();
+        if (previous != null && shown && (changes & SightOverlayConfig.CHANGE_COLOR) != 0) {
+            animator.triggerPulse();
+        }
+        invalidate();
+    }
+
+    @Override
+    public SightOverlayConfig getConfig() {
+        return this.config;
+    }
+
+    @Override
+    public SightRenderState getRenderState() {
+        return this.renderState;
+    }
+
+    @Override
+    public void setPart(int part) {
+        if (this.part != part) {
+            this.part = part;
+            painter.setPart(part);
+            applyAnimationMode();
+            invalidate();
+        }
+    }
+
+    @Override
+    public int getPart() {
+        return this.part;
+    }
+
+    @Override
+    public int getWindowWidth(int screenWidth) {
+        return ReticlePainter.windowWidth(renderState, part, screenWidth, animator);
+    }
+
+    @Override
+    public int getWindowHeight(int screenHeight) {
+        return ReticlePainter.windowHeight(renderState, part, screenHeight, animator);
+    }
+
+    @Override
+    public void setRasterCacheEnabled(boolean enabled) {
+        painter.setRasterCacheEnabled(enabled);
+        invalidate();
+    }
+
+    @Override
+    public void setAnimation(int mode, int frameRateCap) {
+        this.animationMode = mode;
+        animator.setFrameRateCap(frameRateCap);
+        applyAnimationMode();
+        invalidate();
+    }
+
+    /**
+     * 象限准星细条铺满屏幕，不参与动画；未附加到窗口或已隐藏时不注册帧回调
+     */
+    private void applyAnimationMode() {
+        animator.setMode(part == ReticlePainter.PART_FULL
+                ? ReticleAnimator.effectiveMode(animationMode, renderState) : ReticleAnimator.ANIM_NONE);
+        if (!isAttachedToWindow() || !shown) {
+            animator.stop();
+        }
+    }
+
+    @Override
+    public void setShown(boolean shown, long requestNanos) {
+        if (this.shown == shown) {
+            return;
+        }
+        this.shown = shown;
+        // 根视图不可见时窗口随之隐藏，Surface 由系统回收，重新显示时首帧从缓存位图绘制
+        setVisibility(shown ? View.VISIBLE : View.INVISIBLE);
+        if (shown) {
+            toggleRequestNanos = requestNanos;
+            if (isAttachedToWindow()) {
+                animator.start();
+            }
+        } else {
+            toggleRequestNanos = 0;
+            animator.stop();
+        }
+    }
+
+    @Override
+    public void release() {
+        animator.stop();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (shown) {
+            animator.start();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        animator.stop();
+        super.onDetachedFromWindow();
+    }
+
+    public boolean isFullScreen() {
+        return config != null && config.getTypeId() == SightType.ID_QUADRANT;
+    }
+
+    /**
+     * 只贴一张缓存位图时透明度可直接作用于该次绘制，省去离屏缓冲；
+     * 矢量绘制时中心点、图元与叠加图层会覆盖同一像素，需先合成再整体应用 setAlpha，否则重叠处被叠加两次
+     */
+    @Override
+    public boolean hasOverlappingRendering() {
+        return !painter.isSingleBitmapBlit();
+    }
+
+    @Override
+    public void invalidate() {
+        OverlayMetrics.getInstance().recordInvalidate();
+        super.invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        long start = System.nanoTime();
+        painter.draw(canvas, getWidth(), getHeight());
+        long end = System.nanoTime();
+        OverlayMetrics.getInstance().recordDraw(end - start);
+        OverlayMetrics.getInstance().recordFrame(end);
+        if (toggleRequestNanos != 0) {
+            OverlayMetrics.getInstance().recordToggle(end - toggleRequestNanos);
+            toggleRequestNanos = 0;
+        }
+    }
+}
+
+/**
+ * 准星渲染线程 - SurfaceView 后端共用的独立绘制线程，与主线程负载解耦
+ */
+class ReticleRenderThread {
+    private static HandlerThread thread;
+    private static Handler handler;
+
+    private ReticleRenderThread() {
+    }
+
+    /**
+     * 获取渲染线程的 Handler，首次调用时启动线程
+     */
+    public static synchronized Handler getHandler() {
+        if (handler == null) {
+            thread = new HandlerThread("SightOverlay.Render", Process.THREAD_PRIORITY_DISPLAY);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    /**
+     * 停止渲染线程，已提交的任务执行完后退出
+     */
+    public static synchronized void shutdown() {
+        if (thread != null) {
+            thread.quitSafely();
+            thread = null;
+            handler = null;
+        }
+    }
+}
+
+/**
+ * SurfaceView 悬浮窗视图 - 在独立渲染线程上锁定 Surface 绘制准星
+ * 主线程只负责编译绘制状态与窗口尺寸，绘制器（ReticlePainter）仅在渲染线程上访问
+ */
+class SurfaceOverlayView extends SurfaceView implements OverlayHost, SurfaceHolder.Callback {
+    private final ReticlePainter painter = new ReticlePainter(); // 仅渲染线程访问
+    private final Handler renderHandler;
+    private final Object surfaceLock = new Object();
+    private final AtomicBoolean renderPending = new AtomicBoolean(false);
+    private final AtomicLong toggleRequestNanos = new AtomicLong(); // 待记录的切换请求时刻，0 表示无
+
+    // 主线程状态
+    private SightOverlayConfig config;
+    private SightRenderState renderState;
+    private int part = ReticlePainter.PART_FULL;
+
+    // 由 surfaceLock 保护
+    private boolean surfaceValid;
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    private final Runnable renderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            renderPending.set(false);
+            render();
+        }
+    };
+
+    public SurfaceOverlayView(Context context) {
+        super(context);
+        renderHandler = ReticleRenderThread.getHandler();
+        // 透明 Surface 置于窗口最上层
+        setZOrderOnTop(true);
+        getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        getHolder().addCallback(this);
+    }
+
+    @Override
+    public View getView() {
+        return this;
+    }
+
+    @Override
+    public void setConfig(SightOverlayConfig config) {
+        int changes = config.diff(this.config);
+        this.config = config;
+        if (changes == 0) {
+            return;
+        }
+
+        // Surface 内容不受 View.setAlpha 影响，透明度作用于画笔
+        final int alpha = (int) (config.opacity * 255);
+        final SightRenderState state;
+        if ((changes & ~SightOverlayConfig.CHANGE_OPACITY) != 0) {
+            renderState = new SightRenderState(config, getResources().getDisplayMetrics().density, renderState);
+            state = renderState;
+        } else {
+            state = null;
+        }
+        renderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (state != null) {
+                    painter.setState(state);
+                }
+                painter.setPaintAlpha(alpha);
+            }
+        });
+        requestRender();
+    }
+
+    @Override
+    public SightOverlayConfig getConfig() {
+        return this.config;
+    }
+
+    @Override
+    public SightRenderState getRenderState() {
+        return this.renderState;
+    }
+
+    @Override
+    public void setPart(final int part) {
+        if (this.part != part) {
+            this.part = part;
+            renderHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    painter.setPart(part);
+                }
+            });
+            requestRender();
+        }
+    }
+
+    @Override
+    public int getPart() {
+        return this.part;
+    }
+
+    @Override
+    public int getWindowWidth(int screenWidth) {
+        return ReticlePainter.windowWidth(renderState, part, screenWidth, null);
+    }
+
+    @Override
+    public int getWindowHeight(int screenHeight) {
+        return ReticlePainter.windowHeight(renderState, part, screenHeight, null);
+    }
+
+    @Override
+    public void setAnimation(int mode, int frameRateCap) {
+        // 动画由主线程 Choreographer 驱动，仅 view 后端支持
+        if (mode != ReticleAnimator.ANIM_NONE) {
+            Log.w("SightOverlay", "surface 后端不支持准星动画，已忽略");
+        }
+    }
+
+    @Override
+    public void setRasterCacheEnabled(final boolean enabled) {
+        renderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                painter.setRasterCacheEnabled(enabled);
+            }
+        });
+        requestRender();
+    }
+
+    @Override
+    public void setShown(boolean shown, long requestNanos) {
+        // 隐藏时 Surface 被销毁，绘制器状态与位图缓存保留在渲染线程，重新创建 Surface 后直接重绘
+        toggleRequestNanos.set(shown ? requestNanos : 0);
+        setVisibility(shown ? View.VISIBLE : View.INVISIBLE);
+    }
+
+    @Override
+    public void release() {
+        getHolder().removeCallback(this);
+        synchronized (surfaceLock) {
+            surfaceValid = false;
+        }
+    }
+
+    /**
+     * 请求在渲染线程上重绘一帧，未执行的请求会合并
+     */
+    public void requestRender() {
+        OverlayMetrics.getInstance().recordInvalidate();
+        if (renderPending.compareAndSet(false, true)) {
+            renderHandler.post(renderRunnable);
+        }
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (surfaceLock) {
+            surfaceValid = true;
+            surfaceWidth = width;
+            surfaceHeight = height;
+        }
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // 持锁返回，保证回调返回后渲染线程不再访问 Surface
+        synchronized (surfaceLock) {
+            surfaceValid = false;
+        }
+    }
+
+    /**
+     * 渲染线程：锁定 Surface 绘制一帧
+     */
+    private void render() {
+        synchronized (surfaceLock) {
+            if (!surfaceValid) {
+                return;
+            }
+            SurfaceHolder holder = getHolder();
+            // Android 8.0+ 使用硬件画布，可直接绘制硬件位图缓存
+            Canvas canvas = Build.VERSION.SDK_INT >= 26 ? holder.lockHardwareCanvas() : holder.lockCanvas();
+            if (canvas == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                painter.draw(canvas, surfaceWidth, surfaceHeight);
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+            long end = System.nanoTime();
+            OverlayMetrics.getInstance().recordDraw(end - start);
+            OverlayMetrics.getInstance().recordFrame(end);
+            long requestNanos = toggleRequestNanos.getAndSet(0);
+            if (requestNanos != 0) {
+                OverlayMetrics.getInstance().recordToggle(end - requestNanos);
+            }
+        }
+    }
+}
+
+/**
+ * 准星动画 - 由 Choreographer 帧回调驱动，按帧率上限推进动画参数
+ * 呼吸与旋转为持续动画，脉冲在颜色变化时触发；没有进行中的动画时不注册帧回调，静止准星零开销
+ * 只能在主线程使用，逐帧推进过程不分配对象
+ */
+class ReticleAnimator implements Choreographer.FrameCallback {
+    // 动画模式（可组合）
+    public static final int ANIM_NONE = 0;
+    public static final int ANIM_BREATHE = 1;      // 中心点呼吸缩放（dot 类型整体缩放）
+    public static final int ANIM_ROTATE = 1 << 1;  // 准星匀速旋转
+    public static final int ANIM_PULSE = 1 << 2;   // 颜色变化时整体脉冲放大
+
+    private static final float BREATHE_AMPLITUDE = 0.35f;
+    private static final long BREATHE_PERIOD_NANOS = 1600000000L;
+    private static final float ROTATE_DEGREES_PER_SECOND = 45f;
+    private static final long ROTATE_PERIOD_NANOS = 8000000000L; // 旋转一周
+    private static final float PULSE_MAX_SCALE = 1.2f;
+    private static final long PULSE_DURATION_NANOS = 300000000L;
+    private static final float SQRT2 = 1.4142136f;
+
+    // 预计算的呼吸曲线，逐帧只做查表与线性插值
+    private static final int BREATHE_STEPS = 64;
+    private static final float[] BREATHE_TABLE = new float[BREATHE_STEPS + 1];
+
+    static {
+        for (int i = 0; i <= BREATHE_STEPS; i++) {
+            BREATHE_TABLE[i] = 1f + BREATHE_AMPLITUDE * (float) Math.sin(2 * Math.PI * i / BREATHE_STEPS);
+        }
+    }
+
+    /**
+     * 动画帧回调目标，在需要重绘时调用
+     */
+    interface Target {
+        void onAnimationFrame();
+    }
+
+    private final Target target;
+    private int mode = ANIM_NONE;
+    private long frameIntervalNanos = 0; // 帧间隔下限，0 表示跟随屏幕刷新率
+    private boolean posted;
+    private long startNanos = -1;
+    private long lastFrameNanos;
+    private boolean pulsePending;
+    private long pulseStartNanos = -1;
+
+    // 当前帧的动画参数
+    private float dotScale = 1f;
+    private float rotation = 0f;
+    private float pulseScale = 1f;
+
+    ReticleAnimator(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * 解析动画模式字符串，如 "breathe,rotate,pulse"
+     */
+    public static int parseMode(String modes) {
+        int mode = ANIM_NONE;
+        if (modes == null) {
+            return mode;
+        }
+        for (String name : modes.split(",")) {
+            String trimmed = name.trim();
+            if ("breathe".equals(trimmed)) {
+                mode |= ANIM_BREATHE;
+            } else if ("rotate".equals(trimmed)) {
+                mode |= ANIM_ROTATE;
+            } else if ("pulse".equals(trimmed)) {
+                mode |= ANIM_PULSE;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * 按绘制状态过滤动画模式：不绘制中心点时呼吸动画没有可见效果，去掉以免逐帧重绘并绕过位图缓存
+     */
+    public static int effectiveMode(int mode, SightRenderState state) {
+        if ((mode & ANIM_BREATHE) != 0 && state != null
+                && state.typeId != SightType.ID_DOT && !state.config.showDot) {
+            mode &= ~ANIM_BREATHE;
+        }
+        return mode;
+    }
+
+    /**
+     * 设置动画模式，参数复位后按需开始推进
+     */
+    public void setMode(int mode) {
+        if (this.mode == mode) {
+            return;
+        }
+        this.mode = mode;
+        this.startNanos = -1;
+        this.pulsePending = false;
+        this.pulseStartNanos = -1;
+        this.dotScale = 1f;
+        this.rotation = 0f;
+        this.pulseScale = 1f;
+        if (isRunning()) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * 设置动画帧率上限（常用 30 / 60 / 120），与屏幕刷新率无关；0 表示跟随屏幕刷新率
+     */
+    public void setFrameRateCap(int fps) {
+        this.frameIntervalNanos = fps > 0 ? 1000000000L / fps : 0;
+    }
+
+    /**
+     * 触发一次脉冲（未启用脉冲模式时忽略）
+     */
+    public void triggerPulse() {
+        if ((mode & ANIM_PULSE) != 0) {
+            pulsePending = true;
+            start();
+        }
+    }
+
+    /**
+     * 是否有进行中的动画
+     */
+    public boolean isRunning() {
+        return (mode & (ANIM_BREATHE | ANIM_ROTATE)) != 0 || pulsePending || pulseStartNanos >= 0;
+    }
+
+    /**
+     * 开始注册帧回调（视图附加到窗口时调用）
+     */
+    public void start() {
+        if (!posted && isRunning()) {
+            posted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * 停止注册帧回调（视图从窗口移除时调用）
+     */
+    public void stop() {
+        if (posted) {
+            posted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        posted = false;
+        if (startNanos < 0) {
+            startNanos = frameTimeNanos;
+            lastFrameNanos = frameTimeNanos - frameIntervalNanos;
+        }
+
+        // 未到帧率上限对应的间隔时跳过本帧，保留四分之一间隔的抖动余量
+        long interval = frameIntervalNanos;
+        if (interval > 0 && frameTimeNanos - lastFrameNanos < interval - interval / 4) {
+            start();
+            return;
+        }
+        lastFrameNanos = frameTimeNanos;
+
+        advance(frameTimeNanos);
+        target.onAnimationFrame();
+        start();
+    }
+
+    /**
+     * 按帧时间计算动画参数
+     */
+    private void advance(long frameTimeNanos) {
+        long elapsed = frameTimeNanos - startNanos;
+        if ((mode & ANIM_BREATHE) != 0) {
+            // 以 double 计算位置，float 舍入可能得到恰好等于 BREATHE_STEPS 的值
+            double position = (double) (elapsed % BREATHE_PERIOD_NANOS) * BREATHE_STEPS / BREATHE_PERIOD_NANOS;
+            int index = Math.min((int) position, BREATHE_STEPS - 1);
+            float fraction = (float) (position - index);
+            dotScale = BREATHE_TABLE[index] + (BREATHE_TABLE[index + 1] - BREATHE_TABLE[index]) * fraction;
+        }
+        if ((mode & ANIM_ROTATE) != 0) {
+            rotation = (float) (elapsed % ROTATE_PERIOD_NANOS) / 1000000000f * ROTATE_DEGREES_PER_SECOND;
+        }
+        if (pulsePending) {
+            pulsePending = false;
+            pulseStartNanos = frameTimeNanos;
+        }
+        if (pulseStartNanos >= 0) {
+            float progress = (float) (frameTimeNanos - pulseStartNanos) / PULSE_DURATION_NANOS;
+            if (progress >= 1f) {
+                pulseScale = 1f;
+                pulseStartNanos = -1;
+            } else {
+                pulseScale = 1f + (PULSE_MAX_SCALE - 1f) * (float) Math.sin(Math.PI * progress);
+            }
+        }
+    }
+
+    public float getDotScale() {
+        return dotScale;
+    }
+
+    public float getRotation() {
+        return rotation;
+    }
+
+    public float getPulseScale() {
+        return pulseScale;
+    }
+
+    /**
+     * 动画过程中准星可能到达的最大外接正方形半边长，窗口按此值预留空间，避免动画中调整窗口
+     */
+    public float getBoundsRadius(SightRenderState state) {
+        float radius = state.boundsRadius;
+        if ((mode & ANIM_BREATHE) != 0) {
+            if (state.typeId == SightType.ID_DOT) {
+                radius *= 1f + BREATHE_AMPLITUDE;
+            } else if (state.config.showDot) {
+                radius = Math.max(radius, state.dotSizePx * (1f + BREATHE_AMPLITUDE) + 2);
+            }
+        }
+        if ((mode & ANIM_ROTATE) != 0) {
+            radius *= SQRT2;
+        }
+        if ((mode & ANIM_PULSE) != 0) {
+            radius *= PULSE_MAX_SCALE;
+        }
+        return radius;
+    }
+}
+
+/**
+ * 耗时直方图 - 固定桶、无锁，记录以微秒为单位的耗时
+ * 桶按 2 的幂分段，每段再等分为 4 个子桶（相对误差不超过 25%），可在任意线程并发记录
+ */
+class DurationHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * 24; // 覆盖到约 16 秒
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get())) {
+            if (maxMicros.compareAndSet(max, micros)) {
+                break;
+            }
+        }
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        int index = (shift + 1) * SUB_BUCKET_COUNT + (int) ((micros >>> shift) & (SUB_BUCKET_COUNT - 1));
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 桶的上界（微秒，不含）
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index + 1;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + subBucket + 1) << shift;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : totalMicros.get() / n;
+    }
+
+    /**
+     * 估算分位数（返回所在桶的上界）
+     * @param quantile 0~1
+     */
+    public long getQuantileMicros(double quantile) {
+        long n = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target && snapshot[i] > 0) {
+                return Math.min(bucketUpperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * 导出非空桶，格式为 [上界微秒, 次数, 上界微秒, 次数, ...]
+     */
+    public JSONArray toJson() {
+        JSONArray result = new JSONArray();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long value = buckets.get(i);
+            if (value > 0) {
+                result.put(bucketUpperBound(i));
+                result.put(value);
+            }
+        }
+        return result;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+}
+
+/**
+ * 悬浮窗指标收集 - 绘制耗时、重绘请求与窗口操作计数，全部为无锁计数器
+ */
+class OverlayMetrics {
+    private static volatile OverlayMetrics instance; // 双重检查锁定需要 volatile，首次访问可能来自多个线程
+
+    private final DurationHistogram drawTime = new DurationHistogram();
+    private final DurationHistogram toggleTime = new DurationHistogram(); // 常驻窗口的显示/隐藏切换延迟
+    private final AtomicLong invalidateCount = new AtomicLong();
+    private final AtomicLong windowAddCount = new AtomicLong();
+    private final AtomicLong windowRemoveCount = new AtomicLong();
+    private final AtomicLong windowRelayoutCount = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
+    private volatile long resetTime = startTime;
+    // 启动阶段：init 时刻、首帧绘制时刻与预热耗时（nanoTime，0 表示尚未发生）
+    private volatile long initNanos;
+    private final AtomicLong firstFrameNanos = new AtomicLong();
+    private volatile long prewarmNanos;
+
+    private OverlayMetrics() {
+    }
+
+    public static OverlayMetrics getInstance() {
+        if (instance == null) {
+            synchronized (OverlayMetrics.class) {
+                if (instance == null) {
+                    instance = new OverlayMetrics();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void recordDraw(long nanos) {
+        drawTime.recordNanos(nanos);
+    }
+
+    public void recordInit() {
+        if (initNanos == 0) {
+            initNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * 记录首帧绘制时刻，只有第一次调用生效
+     */
+    public void recordFrame(long nanos) {
+        if (firstFrameNanos.get() == 0) {
+            firstFrameNanos.compareAndSet(0, nanos);
+        }
+    }
+
+    public void recordPrewarm(long nanos) {
+        prewarmNanos = nanos;
+    }
+
+    /**
+     * 记录一次显示/隐藏切换从请求到生效的耗时
+     */
+    public void recordToggle(long nanos) {
+        toggleTime.recordNanos(nanos);
+    }
+
+    public void recordInvalidate() {
+        invalidateCount.incrementAndGet();
+    }
+
+    public void recordWindowAdd() {
+        windowAddCount.incrementAndGet();
+    }
+
+    public void recordWindowRemove() {
+        windowRemoveCount.incrementAndGet();
+    }
+
+    public void recordWindowRelayout() {
+        windowRelayoutCount.incrementAndGet();
+    }
+
+    /**
+     * 生成指标快照
+     * @param coalescers 提供 update 合并统计（各显示器汇总）
+     */
+    public JSONObject snapshot(UpdateCoalescer... coalescers) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("since", resetTime);
+
+        result.put("draw", histogramJson(drawTime));
+        result.put("toggle", histogramJson(toggleTime));
+
+        result.put("invalidates", invalidateCount.get());
+
+        JSONObject startup = new JSONObject();
+        long init = initNanos;
+        long firstFrame = firstFrameNanos.get();
+        startup.put("initToFirstFrameUs", init != 0 && firstFrame != 0 ? (firstFrame - init) / 1000 : -1);
+        startup.put("prewarmUs", prewarmNanos != 0 ? prewarmNanos / 1000 : -1);
+        result.put("startup", startup);
+
+        JSONObject window = new JSONObject();
+        window.put("added", windowAddCount.get());
+        window.put("removed", windowRemoveCount.get());
+        window.put("relayouts", windowRelayoutCount.get());
+        result.put("window", window);
+
+        long received = 0;
+        long applied = 0;
+        long dropped = 0;
+        for (UpdateCoalescer coalescer : coalescers) {
+            received += coalescer.getReceivedCount();
+            applied += coalescer.getAppliedCount();
+            dropped += coalescer.getDroppedCount();
+        }
+        JSONObject updates = new JSONObject();
+        updates.put("received", received);
+        updates.put("applied", applied);
+        updates.put("dropped", dropped);
+        result.put("updates", updates);
+        return result;
+    }
+
+    private static JSONObject histogramJson(DurationHistogram histogram) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", histogram.getCount());
+        json.put("meanUs", histogram.getMeanMicros());
+        json.put("p50Us", histogram.getQuantileMicros(0.5));
+        json.put("p90Us", histogram.getQuantileMicros(0.9));
+        json.put("p99Us", histogram.getQuantileMicros(0.99));
+        json.put("maxUs", histogram.getMaxMicros());
+        json.put("histogram", histogram.toJson());
+        return json;
+    }
+
+    /**
+     * 清零绘制与窗口指标（update 合并统计由合并器自行维护）
+     */
+    public void reset() {
+        drawTime.reset();
+        toggleTime.reset();
+        invalidateCount.set(0);
+        windowAddCount.set(0);
+        windowRemoveCount.set(0);
+        windowRelayoutCount.set(0);
+        resetTime = System.currentTimeMillis();
+    }
+}
+
+/**
+ * 配置更新合并器 - 将任意线程上的连续 update 请求合并为每个 vsync 至多应用一次
+ * 被后续请求覆盖的中间配置直接丢弃，只应用最新值
+ */
+class UpdateCoalescer {
+
+    /**
+     * 合并后的配置应用目标，在主线程回调
+     */
+    interface Target {
+        void applyUpdate(SightOverlayConfig config);
+    }
+
+    private final Target target;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicReference<SightOverlayConfig> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // 先清除调度标记，保证此后到达的请求会调度下一帧
+            scheduled.set(false);
+            SightOverlayConfig config = pending.getAndSet(null);
+            if (config != null) {
+                appliedCount.incrementAndGet();
+                target.applyUpdate(config);
+            }
+        }
+    };
+
+    private final Runnable scheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    };
+
+    UpdateCoalescer(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * 提交一次配置更新，可在任意线程调用，不阻塞调用方
+     */
+    public void submit(SightOverlayConfig config) {
+        receivedCount.incrementAndGet();
+        if (pending.getAndSet(config) != null) {
+            droppedCount.incrementAndGet();
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            // Choreographer 与线程绑定，必须在主线程上注册帧回调
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                scheduleRunnable.run();
+            } else {
+                mainHandler.post(scheduleRunnable);
+            }
+        }
+    }
+
+    /**
+     * 丢弃尚未应用的更新（show/hide 会覆盖之前的 update）
+     */
+    public void cancel() {
+        if (pending.getAndSet(null) != null) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    public long getAppliedCount() {
+        return appliedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
+
+/**
+ * 悬浮窗命令队列 - 静态 API 可在任意线程调用，命令无锁入队后由主线程单一消费者按顺序执行
+ * 每批执行前合并冗余命令：同一显示器上被后续 show/hide 覆盖的命令直接丢弃，
+ * show 之后的 update 并入 show，release 之前的所有显示器命令丢弃；设置类任务始终保留
+ * 渲染后端是全局设置，被覆盖的 show 若指定了后端，降级为在原位置执行的后端切换
+ */
+class OverlayCommandQueue {
+
+    /**
+     * 命令执行目标，在主线程回调
+     */
+    interface Target {
+        /**
+         * @param requestNanos 命令入队时刻（System.nanoTime），用于统计切换延迟
+         */
+        void showNow(int displayId, SightOverlayConfig config, String backend, long requestNanos);
+
+        void hideNow(int displayId, long requestNanos);
+
+        void updateNow(int displayId, SightOverlayConfig config);
+
+        void releaseNow();
+
+        void setBackendNow(String backend);
+    }
+
+    static final int KIND_SHOW = 0;
+    static final int KIND_HIDE = 1;
+    static final int KIND_UPDATE = 2;
+    static final int KIND_RELEASE = 3;
+    static final int KIND_TASK = 4;
+
+    /**
+     * 单条命令
+     */
+    static final class Command {
+        final int kind;
+        final int displayId;
+        SightOverlayConfig config; // show 可能并入后续 update 的配置
+        final String backend;      // show 使用的渲染后端，null 表示沿用当前后端
+        final Runnable task;
+        final long requestNanos = System.nanoTime();
+        boolean collapsed;
+        boolean backendOnly;       // 被覆盖的 show 只保留后端切换
+
+        Command(int kind, int displayId, SightOverlayConfig config, String backend, Runnable task) {
+            this.kind = kind;
+            this.displayId = displayId;
+            this.config = config;
+            this.backend = backend;
+            this.task = task;
+        }
+    }
+
+    private final Target target;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong collapsedCount = new AtomicLong();
+    // 以下集合只在主线程使用，批次之间复用
+    private final List<Command> batch = new ArrayList<>();
+    private final Set<Integer> settledDisplays = new HashSet<>();
+    private final Map<Integer, Command> laterUpdates = new HashMap<>();
+
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // 先清除调度标记，保证此后入队的命令会调度下一批
+            scheduled.set(false);
+            drain();
+        }
+    };
+
+    OverlayCommandQueue(Target target) {
+        this.target = target;
+    }
+
+    public void show(int displayId, SightOverlayConfig config, String backend) {
+        enqueue(new Command(KIND_SHOW, displayId, config, backend, null));
+    }
+
+    public void hide(int displayId) {
+        enqueue(new Command(KIND_HIDE, displayId, null, null, null));
+    }
+
+    public void update(int displayId, SightOverlayConfig config) {
+        enqueue(new Command(KIND_UPDATE, displayId, config, null, null));
+    }
+
+    public void release() {
+        enqueue(new Command(KIND_RELEASE, 0, null, null, null));
+    }
+
+    /**
+     * 提交一个需要在主线程按顺序执行的任务（设置类操作），不参与合并
+     */
+    public void post(Runnable task) {
+        enqueue(new Command(KIND_TASK, 0, null, null, task));
+    }
+
+    private void enqueue(Command command) {
+        enqueuedCount.incrementAndGet();
+        queue.offer(command);
+        if (scheduled.compareAndSet(false, true)) {
+            mainHandler.post(drainRunnable);
+        }
+    }
+
+    /**
+     * 取出当前所有命令，合并后按顺序执行（主线程）
+     */
+    private void drain() {
+        Command command;
+        while ((command = queue.poll()) != null) {
+            batch.add(command);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        collapse();
+        for (int i = 0; i < batch.size(); i++) {
+            command = batch.get(i);
+            if (command.collapsed) {
+                continue;
+            }
+            executedCount.incrementAndGet();
+            try {
+                execute(command);
+            } catch (Exception e) {
+                // 单条命令失败不影响后续命令
+                Log.e("SightOverlay", "执行悬浮窗命令失败: " + e.getMessage());
+            }
+        }
+        batch.clear();
+        settledDisplays.clear();
+        laterUpdates.clear();
+    }
+
+    /**
+     * 从后向前扫描，标记被后续命令覆盖的命令
+     */
+    private void collapse() {
+        boolean released = false;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Command command = batch.get(i);
+            switch (command.kind) {
+                case KIND_RELEASE:
+                    if (released) {
+                        markCollapsed(command);
+                    }
+                    released = true;
+                    break;
+                case KIND_SHOW:
+                case KIND_HIDE:
+                    if (released || !settledDisplays.add(command.displayId)) {
+                        markSuperseded(command);
+                        break;
+                    }
+                    Command update = laterUpdates.remove(command.displayId);
+                    if (update != null) {
+                        // show 直接使用之后的配置；hide 之后的 update 不会生效
+                        if (command.kind == KIND_SHOW) {
+                            command.config = update.config;
+                        }
+                        markCollapsed(update);
+                    }
+                    break;
+                case KIND_UPDATE:
+                    if (released || settledDisplays.contains(command.displayId)
+                            || laterUpdates.containsKey(command.displayId)) {
+                        markCollapsed(command);
+                    } else {
+                        laterUpdates.put(command.displayId, command);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void markCollapsed(Command command) {
+        command.collapsed = true;
+        collapsedCount.incrementAndGet();
+    }
+
+    /**
+     * 丢弃被覆盖的 show/hide；指定了后端的 show 保留后端切换，保证之后的 show 使用该后端
+     */
+    private void markSuperseded(Command command) {
+        if (command.kind == KIND_SHOW && command.backend != null) {
+            command.backendOnly = true;
+            collapsedCount.incrementAndGet();
+        } else {
+            markCollapsed(command);
+        }
+    }
+
+    private void execute(Command command) {
+        switch (command.kind) {
+            case KIND_SHOW:
+                if (command.backendOnly) {
+                    target.setBackendNow(command.backend);
+                } else {
+                    target.showNow(command.displayId, command.config, command.backend, command.requestNanos);
+                }
+                break;
+            case KIND_HIDE:
+                target.hideNow(command.displayId, command.requestNanos);
+                break;
+            case KIND_UPDATE:
+                target.updateNow(command.displayId, command.config);
+                break;
+            case KIND_RELEASE:
+                target.releaseNow();
+                break;
+            default:
+                command.task.run();
+                break;
+        }
+    }
+
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    public long getCollapsedCount() {
+        return collapsedCount.get();
+    }
+}
+
+/**
+ * 功耗与温控渲染策略 - 监听亮灭屏、省电模式与 PowerManager 温控状态，按设备状态降低悬浮窗的渲染开销
+ * 降级只作用于实际生效的设置，调用方设置的动画与缓存选项保持不变，状态恢复后自动还原
+ * 回调与注册均在主线程
+ */
+class RenderPowerPolicy {
+    public static final int LEVEL_FULL = 0;      // 正常渲染
+    public static final int LEVEL_REDUCED = 1;   // 省电模式或轻中度温控：动画限帧，强制位图缓存
+    public static final int LEVEL_MINIMAL = 2;   // 严重温控：暂停动画，强制位图缓存
+    public static final int LEVEL_SUSPENDED = 3; // 屏幕关闭：暂停动画
+
+    static final int REDUCED_FRAME_RATE_CAP = 30;
+
+    private static final String[] LEVEL_NAMES = {"full", "reduced", "minimal", "suspended"};
+
+    /**
+     * 策略等级变化回调，在主线程调用
+     */
+    interface Listener {
+        void onPolicyChanged(RenderPowerPolicy policy);
+    }
+
+    private final Listener listener;
+    private Context context;
+    private PowerManager powerManager;
+    private Object thermalListener; // PowerManager.OnThermalStatusChangedListener，仅 Android 10+
+    private volatile boolean enabled = true;
+    private volatile boolean screenOn = true;
+    private volatile boolean powerSave;
+    private volatile int thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    private volatile int level = LEVEL_FULL;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_SCREEN_ON.equals(action)) {
+                screenOn = true;
+            } else if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                screenOn = false;
+            } else if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(action)) {
+                powerSave = powerManager != null && powerManager.isPowerSaveMode();
+            }
+            evaluate();
+        }
+    };
+
+    RenderPowerPolicy(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 读取当前设备状态并注册监听
+     */
+    public void register(Context context) {
+        if (this.context != null) {
+            return;
+        }
+        this.context = context;
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            screenOn = powerManager.isInteractive();
+            powerSave = powerManager.isPowerSaveMode();
+        }
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        context.registerReceiver(receiver, filter);
+
+        // Android 10+ 提供温控状态回调
+        if (powerManager != null && Build.VERSION.SDK_INT >= 29) {
+            thermalStatus = powerManager.getCurrentThermalStatus();
+            PowerManager.OnThermalStatusChangedListener thermal = new PowerManager.OnThermalStatusChangedListener() {
+                @Override
+                public void onThermalStatusChanged(int status) {
+                    thermalStatus = status;
+                    evaluate();
+                }
+            };
+            powerManager.addThermalStatusListener(thermal);
+            thermalListener = thermal;
+        }
+        evaluate();
+    }
+
+    /**
+     * 注销监听
+     */
+    public void unregister() {
+        if (context == null) {
+            return;
+        }
+        try {
+            context.unregisterReceiver(receiver);
+        } catch (IllegalArgumentException e) {
+            Log.w("SightOverlay", "注销功耗状态监听失败: " + e.getMessage());
+        }
+        if (thermalListener != null && Build.VERSION.SDK_INT >= 29) {
+            powerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) thermalListener);
+        }
+        thermalListener = null;
+        powerManager = null;
+        context = null;
+    }
+
+    /**
+     * 设置是否启用策略，关闭后始终按正常等级渲染
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        evaluate();
+    }
+
+    private int computeLevel() {
+        if (!enabled) {
+            return LEVEL_FULL;
+        }
+        if (!screenOn) {
+            return LEVEL_SUSPENDED;
+        }
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+            return LEVEL_MINIMAL;
+        }
+        if (powerSave || thermalStatus >= PowerManager.THERMAL_STATUS_LIGHT) {
+            return LEVEL_REDUCED;
+        }
+        return LEVEL_FULL;
+    }
+
+    private void evaluate() {
+        int next = computeLevel();
+        if (next == level) {
+            return;
+        }
+        Log.i("SightOverlay", "渲染策略: " + LEVEL_NAMES[level] + " -> " + LEVEL_NAMES[next]
+                + " (亮屏: " + screenOn + ", 省电: " + powerSave + ", 温控: " + thermalStatus + ")");
+        level = next;
+        listener.onPolicyChanged(this);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * 当前等级下实际生效的动画模式
+     */
+    public int getAnimationMode(int requested) {
+        return level >= LEVEL_MINIMAL ? ReticleAnimator.ANIM_NONE : requested;
+    }
+
+    /**
+     * 当前等级下实际生效的动画帧率上限（0 表示跟随屏幕刷新率）
+     */
+    public int getFrameRateCap(int requested) {
+        if (level == LEVEL_REDUCED && (requested == 0 || requested > REDUCED_FRAME_RATE_CAP)) {
+            return REDUCED_FRAME_RATE_CAP;
+        }
+        return requested;
+    }
+
+    /**
+     * 当前等级下是否使用位图缓存（降级时静态准星改为贴图，省去每帧的矢量绘制）
+     */
+    public boolean isRasterCacheEnabled(boolean requested) {
+        return requested || (level == LEVEL_REDUCED || level == LEVEL_MINIMAL);
+    }
+
+    /**
+     * 状态快照
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("enabled", enabled);
+        json.put("level", LEVEL_NAMES[level]);
+        json.put("screenOn", screenOn);
+        json.put("powerSave", powerSave);
+        json.put("thermalStatus", thermalStatus);
+        return json;
+    }
+}
+
+/**
+ * 单个显示器上的悬浮窗实例 - 持有该显示器的窗口、视图、屏幕尺寸缓存与 update 合并器
+ * 由 sight_overlay 按显示器 ID 管理，各实例之间互不共享可变状态
+ */
+class DisplayOverlay {
+    private final sight_overlay module;
+    private final int displayId;
+    private final android.view.Display display;
+    private final Context mContext;           // 绑定到该显示器的 Context（密度、配置按该显示器计算）
+    private final WindowManager mWindowManager;
+    // mOverlayView 与 hidden 只在主线程写入，volatile 供 getDisplays 在任意线程读取 isShowing
+    private volatile OverlayHost mOverlayView;
+    private OverlayHost mVerticalStripView;   // 象限准星的竖直细条窗口
+    private String viewBackend;               // 现有视图使用的渲染后端
+    private volatile boolean hidden;          // 常驻窗口模式下窗口保持附加但已隐藏
+    private long hideRequestNanos;            // 待记录的隐藏请求时刻
+    private final Choreographer.FrameCallback hideFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // 隐藏后的下一帧窗口已不再合成，以此作为隐藏生效时刻
+            OverlayMetrics.getInstance().recordToggle(System.nanoTime() - hideRequestNanos);
+        }
+    };
+    private int screenWidth = 0;
+    private int screenHeight = 0;
+    private int screenOrientation = Configuration.ORIENTATION_PORTRAIT; // 屏幕方向
+    private int rotation = 0; // 屏幕旋转角度
+    private boolean screenMetricsValid = false; // 屏幕尺寸缓存是否有效，由显示器监听维护
+    private volatile long publishedSize = -1;   // 主线程发布的屏幕尺寸快照（宽 << 32 | 高），未测量时为 -1
+    private final android.graphics.Point screenSizeBuffer = new android.graphics.Point();
+    private final UpdateCoalescer updateCoalescer = new UpdateCoalescer(new UpdateCoalescer.Target() {
+        @Override
+        public void applyUpdate(SightOverlayConfig config) {
+            updateInternal(config);
+        }
+    });
+
+    /**
+     * @param display 目标显示器，为空时使用应用 Context 的默认显示器
+     */
+    DisplayOverlay(sight_overlay module, Context appContext, int displayId, android.view.Display display) {
+        this.module = module;
+        this.displayId = displayId;
+        // Android 4.2+ 为非默认显示器创建专属 Context，窗口才会添加到该显示器
+        if (display != null && displayId != android.view.Display.DEFAULT_DISPLAY && Build.VERSION.SDK_INT >= 17) {
+            this.mContext = appContext.createDisplayContext(display);
+        } else {
+            this.mContext = appContext;
+        }
+        this.mWindowManager = (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
+        this.display = display != null ? display : mWindowManager.getDefaultDisplay();
+    }
+
+    public int getDisplayId() {
+        return displayId;
+    }
+
+    public android.view.Display getDisplay() {
+        return display;
+    }
+
+    public UpdateCoalescer getUpdateCoalescer() {
+        return updateCoalescer;
+    }
+
+    public boolean isShowing() {
+        return mOverlayView != null && !hidden;
+    }
+
+    public int getScreenWidth() {
+        ensureScreenSize();
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        ensureScreenSize();
+        return screenHeight;
+    }
+
+    /**
+     * 最近一次测量的屏幕尺寸快照，可在任意线程读取，不触发测量
+     * @return 宽 << 32 | 高，尚未测量时返回 -1
+     */
+    public long getPublishedSize() {
+        return publishedSize;
+    }
+
+    /**
+     * 当前显示的配置，未显示时返回 null
+     */
+    public SightOverlayConfig getCurrentConfig() {
+        OverlayHost view = mOverlayView;
+        return view != null ? view.getConfig() : null;
+    }
+
+    /**
+     * 获取屏幕旋转角度
+     */
+    private void updateScreenRotation() {
+        int current = display.getRotation();
+        if (current == rotation && screenMetricsValid) {
+            return;
+        }
+        rotation = current;
+        String rotationStr;
+        switch (rotation) {
+            case android.view.Surface.ROTATION_0:
+                rotationStr = "0° (竖屏)";
+                break;
+            case android.view.Surface.ROTATION_90:
+                rotationStr = "90° (横屏)";
+                break;
+            case android.view.Surface.ROTATION_180:
+                rotationStr = "180° (倒竖屏)";
+                break;
+            case android.view.Surface.ROTATION_270:
+                rotationStr = "270° (倒横屏)";
+                break;
+            default:
+                rotationStr = "未知";
+                break;
+        }
+        Log.i("SightOverlay", "显示器 " + displayId + " 旋转: " + rotationStr);
+    }
+
+    /**
+     * 获取屏幕方向（横屏/竖屏）
+     */
+    private void updateScreenOrientation() {
+        screenOrientation = mContext.getResources().getConfiguration().orientation;
+    }
+
+    /**
+     * 更新缓存的屏幕尺寸（考虑旋转），只在显示器变化事件和首次使用时调用
+     * @return 尺寸或旋转是否发生变化
+     */
+    boolean updateScreenSize() {
+        if (display == null) {
+            return false;
+        }
+        int previousWidth = screenWidth;
+        int previousHeight = screenHeight;
+        int previousRotation = rotation;
+
+        // 先获取当前旋转角度和方向
+        updateScreenRotation();
+        updateScreenOrientation();
+
+        display.getSize(screenSizeBuffer);
+
+        // 横屏时需要交换宽高，确保 width > height
+        if (isLandscape()) {
+            screenWidth = Math.max(screenSizeBuffer.x, screenSizeBuffer.y);
+            screenHeight = Math.min(screenSizeBuffer.x, screenSizeBuffer.y);
+        } else {
+            screenWidth = screenSizeBuffer.x;
+            screenHeight = screenSizeBuffer.y;
+        }
+
+        boolean changed = !screenMetricsValid || screenWidth != previousWidth
+                || screenHeight != previousHeight || rotation != previousRotation;
+        screenMetricsValid = true;
+        publishedSize = ((long) screenWidth << 32) | (screenHeight & 0xFFFFFFFFL);
+        if (changed) {
+            String orientationStr = (screenOrientation == Configuration.ORIENTATION_LANDSCAPE)
+                    ? "横屏" : "竖屏";
+            Log.i("SightOverlay", "显示器 " + displayId + " 尺寸: " + screenWidth + "x" + screenHeight
+                    + " (" + orientationStr + ")");
+        }
+        return changed;
+    }
+
+    /**
+     * 确保屏幕尺寸已缓存（监听注册前或注册失败时按需查询一次）
+     */
+    private void ensureScreenSize() {
+        if (!screenMetricsValid) {
+            updateScreenSize();
+        }
+    }
+
+    /**
+     * 判断是否为横屏
+     */
+    private boolean isLandscape() {
+        return screenOrientation == Configuration.ORIENTATION_LANDSCAPE || rotation == android.view.Surface.ROTATION_90 || rotation == android.view.Surface.ROTATION_270;
+    }
+
+    /**
+     * 显示器变化（旋转、分辨率、配置变更）时刷新缓存，并就地调整已显示的窗口
+     */
+    void onDisplayChanged() {
+        if (!updateScreenSize()) {
+            return;
+        }
+        try {
+            if (mOverlayView != null) {
+                relayoutIfNeeded(mOverlayView);
+            }
+            if (mVerticalStripView != null) {
+                relayoutIfNeeded(mVerticalStripView);
+            }
+        } catch (Exception e) {
+            Log.e("SightOverlay", "旋转后调整悬浮窗失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 创建布局参数，窗口尺寸由视图的准星几何范围决定
+     */
+    private WindowManager.LayoutParams createLayoutParams(OverlayHost view) {
+        int type;
+        if (Build.VERSION.SDK_INT >= 26) {
+            type = WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY;
+        } else {
+            type = WindowManager.LayoutParams.TYPE_PHONE;
+        }
+
+        int flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
+                WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE |
+                WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
+                WindowManager.LayoutParams.FLAG_FULLSCREEN;
+
+        // 普通准星紧贴外接正方形，象限准星使用横竖两条细窗口代替全屏窗口
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                view.getWindowWidth(this.screenWidth), // width
+                view.getWindowHeight(this.screenHeight), // height
+                type,
+                flags,
+                PixelFormat.TRANSLUCENT
+        );
+        params.gravity = Gravity.CENTER;
+
+        return params;
+    }
+
+    /**
+     * 创建准星视图
+     */
+    private OverlayHost createOverlayView(SightOverlayConfig config, int part) {
+        OverlayHost view = sight_overlay.BACKEND_SURFACE.equals(module.getRenderBackend())
+                ? new SurfaceOverlayView(mContext) : new OverlayView(mContext);
+        view.setPart(part);
+        view.setRasterCacheEnabled(module.isRasterCacheEnabled());
+        view.setConfig(config);
+        view.setAnimation(module.getAnimationMode(), module.getAnimationFrameRateCap());
+        return view;
+    }
+
+    /**
+     * 添加准星窗口
+     */
+    private void addWindow(OverlayHost view, WindowManager.LayoutParams params) {
+        mWindowManager.addView(view.getView(), params);
+        OverlayMetrics.getInstance().recordWindowAdd();
+    }
+
+    /**
+     * 移除准星窗口并释放后端资源；窗口已被系统移除（显示器断开）时仍释放资源
+     */
+    private void removeWindow(OverlayHost view) {
+        try {
+            mWindowManager.removeView(view.getView());
+            OverlayMetrics.getInstance().recordWindowRemove();
+        } catch (IllegalArgumentException e) {
+            Log.w("SightOverlay", "窗口已被移除, 显示器: " + displayId);
+        } finally {
+            view.release();
+        }
+    }
+
+    /**
+     * 准星几何范围变化后，在现有窗口上调整尺寸
+     */
+    private void relayoutIfNeeded(OverlayHost view) {
+        WindowManager.LayoutParams params = (WindowManager.LayoutParams) view.getView().getLayoutParams();
+        if (params == null) {
+            return;
+        }
+        int width = view.getWindowWidth(this.screenWidth);
+        int height = view.getWindowHeight(this.screenHeight);
+        if (params.width != width || params.height != height) {
+            params.width = width;
+            params.height = height;
+            mWindowManager.updateViewLayout(view.getView(), params);
+            OverlayMetrics.getInstance().recordWindowRelayout();
+        }
+    }
+
+    /**
+     * 显示悬浮窗
+     * @param requestNanos 显示请求时刻，常驻窗口切换时用于统计切换延迟
+     */
+    void show(SightOverlayConfig config, long requestNanos) {
+        try {
+            // 屏幕尺寸由显示器监听维护，此处只在缓存无效时查询
+            ensureScreenSize();
+
+            // 常驻窗口模式：沿用已附加的窗口，就地应用配置后切换为可见
+            if (mOverlayView != null && module.isPersistentWindow()
+                    && module.getRenderBackend().equals(viewBackend)) {
+                updateCoalescer.cancel();
+                applyConfig(config);
+                if (hidden) {
+                    hidden = false;
+                    setShown(true, requestNanos);
+                    Log.i("SightOverlay", "悬浮窗切换为显示, 显示器: " + displayId + ", 类型: " + config.type);
+                }
+                module.recordLast(displayId, config, true);
+                return;
+            }
+
+            // 移除已存在的悬浮窗
+            removeWindows();
+
+            boolean isQuadrant = config.usesQuadrantStrips();
+
+            // 创建新视图
+            viewBackend = module.getRenderBackend();
+            mOverlayView = createOverlayView(config, isQuadrant ? ReticlePainter.PART_HORIZONTAL : ReticlePainter.PART_FULL);
+
+            // 添加到窗口（此时 createLayoutParams 会使用最新获取的屏幕尺寸）
+            WindowManager.LayoutParams params = createLayoutParams(mOverlayView);
+            addWindow(mOverlayView, params);
+
+            if (isQuadrant) {
+                mVerticalStripView = createOverlayView(config, ReticlePainter.PART_VERTICAL);
+                addWindow(mVerticalStripView, createLayoutParams(mVerticalStripView));
+            }
+
+            Log.i("SightOverlay", "悬浮窗显示成功, 显示器: " + displayId + ", 类型: " + config.type
+                    + ", 尺寸: " + params.width + "x" + params.height + ", 后端: " + module.getRenderBackend());
+            module.recordLast(displayId, config, true);
+        } catch (Exception e) {
+            Log.e("SightOverlay", "显示悬浮窗失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 隐藏悬浮窗，常驻窗口模式下只切换可见性
+     * @param requestNanos 隐藏请求时刻，常驻窗口切换时用于统计切换延迟
+     */
+    void hide(long requestNanos) {
+        updateCoalescer.cancel();
+        SightOverlayConfig current = getCurrentConfig();
+        if (current != null) {
+            module.recordLast(displayId, current, false);
+        }
+        if (mOverlayView != null && module.isPersistentWindow()) {
+            if (!hidden) {
+                hidden = true;
+                setShown(false, requestNanos);
+            }
+            return;
+        }
+        removeWindows();
+    }
+
+    /**
+     * 移除所有窗口（包括常驻模式下已隐藏的窗口）
+     */
+    void removeWindows() {
+        updateCoalescer.cancel();
+        hidden = false;
+        try {
+            if (mVerticalStripView != null) {
+                removeWindow(mVerticalStripView);
+                mVerticalStripView = null;
+            }
+            if (mOverlayView != null) {
+                removeWindow(mOverlayView);
+                mOverlayView = null;
+            }
+        } catch (Exception e) {
+            Log.e("SightOverlay", "隐藏悬浮窗失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭常驻窗口模式时移除已隐藏的窗口
+     */
+    void removeIfHidden() {
+        if (hidden) {
+            removeWindows();
+        }
+    }
+
+    /**
+     * 切换已附加窗口的可见性；窗口本身为不可聚焦、不可触摸，无需调整窗口标志
+     */
+    private void setShown(boolean shown, long requestNanos) {
+        mOverlayView.setShown(shown, requestNanos);
+        if (mVerticalStripView != null) {
+            mVerticalStripView.setShown(shown, 0);
+        }
+        if (!shown && requestNanos != 0) {
+            hideRequestNanos = requestNanos;
+            Choreographer.getInstance().removeFrameCallback(hideFrameCallback);
+            Choreographer.getInstance().postFrameCallback(hideFrameCallback);
+        }
+    }
+
+    /**
+     * 提交配置更新，同一帧内的多次更新合并为一次
+     */
+    void update(SightOverlayConfig config) {
+        updateCoalescer.submit(config);
+    }
+
+    /**
+     * 应用配置更新，已隐藏的常驻窗口忽略更新
+     */
+    private void updateInternal(SightOverlayConfig config) {
+        if (mOverlayView == null || hidden) {
+            return;
+        }
+        applyConfig(config);
+    }
+
+    /**
+     * 在现有窗口上应用配置
+     */
+    private void applyConfig(SightOverlayConfig config) {
+        // 配置完全相同则跳过
+        int changes = config.diff(mOverlayView.getConfig());
+        if (changes == 0) {
+            return;
+        }
+
+        boolean wasQuadrant = mVerticalStripView != null;
+        boolean isQuadrant = config.usesQuadrantStrips();
+
+        try {
+            if (isQuadrant && !wasQuadrant) {
+                ensureScreenSize();
+            }
+            mOverlayView.setPart(isQuadrant ? ReticlePainter.PART_HORIZONTAL : ReticlePainter.PART_FULL);
+            mOverlayView.setConfig(config);
+
+            // 象限准星切换时只增删竖直细条窗口，主窗口保留并调整尺寸
+            if (isQuadrant && mVerticalStripView == null) {
+                mVerticalStripView = createOverlayView(config, ReticlePainter.PART_VERTICAL);
+                addWindow(mVerticalStripView, createLayoutParams(mVerticalStripView));
+            } else if (!isQuadrant && mVerticalStripView != null) {
+                removeWindow(mVerticalStripView);
+                mVerticalStripView = null;
+            } else if (mVerticalStripView != null) {
+                mVerticalStripView.setConfig(config);
+            }
+
+            // 只有颜色/透明度变化时几何范围不变，无需调整窗口
+            if ((changes & ~(SightOverlayConfig.CHANGE_COLOR | SightOverlayConfig.CHANGE_OPACITY)) != 0
+                    || isQuadrant != wasQuadrant) {
+                relayoutIfNeeded(mOverlayView);
+                if (mVerticalStripView != null) {
+                    relayoutIfNeeded(mVerticalStripView);
+                }
+            }
+        } catch (Exception e) {
+            Log.e("SightOverlay", "更新悬浮窗失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 应用动画设置
+     */
+    void setAnimation(int mode, int frameRateCap) {
+        if (mOverlayView != null) {
+            mOverlayView.setAnimation(mode, frameRateCap);
+            // 动画需要的外接范围不同，调整窗口尺寸
+            relayoutIfNeeded(mOverlayView);
+        }
+    }
+
+    /**
+     * 应用位图缓存设置
+     */
+    void setRasterCacheEnabled(boolean enabled) {
+        if (mOverlayView != null) {
+            mOverlayView.setRasterCacheEnabled(enabled);
+        }
+        if (mVerticalStripView != null) {
+            mVerticalStripView.setRasterCacheEnabled(enabled);
+        }
+    }
+}
+
+/**
+ * 悬浮窗管理器模块
+ */
+public class sight_overlay {
+
+    private static sight_overlay instance;
+    private Context mContext;               // 仅在主线程读写，release 后置空
+    private volatile Context appContext;    // init 时同步设置，供权限查询等任意线程调用使用
+    // 渲染后端
+    public static final String BACKEND_VIEW = "view";       // 主线程 onDraw 绘制（默认）
+    public static final String BACKEND_SURFACE = "surface"; // SurfaceView + 独立渲染线程
+
+    // 按显示器 ID 索引的悬浮窗实例，读取无锁
+    private final ConcurrentHashMap<Integer, DisplayOverlay> displays = new ConcurrentHashMap<>();
+    private String renderBackend = BACKEND_VIEW; // 当前渲染后端
+    private int animationMode = ReticleAnimator.ANIM_NONE; // 准星动画模式
+    private int animationFrameRateCap = 60; // 动画帧率上限
+    private volatile DisplayManager mDisplayManager; // 主线程注册，getDisplays 在任意线程读取
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+            // 显示器断开时系统已移除其窗口，仍需释放视图持有的渲染线程、动画与 Surface 资源
+            DisplayOverlay overlay = displays.remove(displayId);
+            if (overlay != null) {
+                overlay.removeWindows();
+                Log.i("SightOverlay", "显示器已移除: " + displayId);
+            }
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            DisplayOverlay overlay = displays.get(displayId);
+            if (overlay != null) {
+                overlay.onDisplayChanged();
+            }
+        }
+    };
+    private final ComponentCallbacks configurationCallbacks = new ComponentCallbacks() {
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+            for (DisplayOverlay overlay : displays.values()) {
+                overlay.onDisplayChanged();
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+        }
+    };
+    private boolean rasterCacheEnabled = true; // 是否启用位图缓存模式
+    private boolean persistentWindow = false;   // 常驻窗口模式：hide 只隐藏窗口，不移除
+    private final AtomicBoolean prewarmStarted = new AtomicBoolean(false);
+    private final AtomicBoolean restoreAttempted = new AtomicBoolean(false);
+    // 功耗与温控策略，等级变化时把实际生效的动画与缓存设置应用到所有显示器
+    private final RenderPowerPolicy renderPolicy = new RenderPowerPolicy(new RenderPowerPolicy.Listener() {
+        @Override
+        public void onPolicyChanged(RenderPowerPolicy policy) {
+            applyRenderSettings();
+        }
+    });
+    private final AtomicReference<ReticlePresetTransfer> presetTransfer = new AtomicReference<>(); // 最近一次预设导入导出
+    private volatile ReticleShapeList customShapes; // 自定义准星图形
+    // 静态 API 的命令队列，窗口与视图状态只在主线程修改
+    private final OverlayCommandQueue commands = new OverlayCommandQueue(new OverlayCommandQueue.Target() {
+        @Override
+        public void showNow(int displayId, SightOverlayConfig config, String backend, long requestNanos) {
+            if (backend != null) {
+                renderBackend = backend;
+            }
+            showInternal(displayId, config, requestNanos);
+        }
+
+        @Override
+        public void hideNow(int displayId, long requestNanos) {
+            DisplayOverlay overlay = displays.get(displayId);
+            if (overlay != null) {
+                overlay.hide(requestNanos);
+            }
+        }
+
+        @Override
+        public void updateNow(int displayId, SightOverlayConfig config) {
+            updateInternal(displayId, config);
+        }
+
+        @Override
+        public void releaseNow() {
+            releaseInternal();
+        }
+
+        @Override
+        public void setBackendNow(String backend) {
+            renderBackend = backend;
+        }
+    });
+
+    private sight_overlay() {
+    }
+
+    public static sight_overlay getInstance() {
+        if (instance == null) {
+            synchronized (sight_overlay.class) {
+                if (instance == null) {
+                    instance = new sight_overlay();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 初始化悬浮窗管理器
+     */
+    public static void init(Context context) {
+        final sight_overlay module = getInstance();
+        final Context applicationContext = context.getApplicationContext();
+        OverlayMetrics.getInstance().recordInit();
+        module.appContext = applicationContext;
+        ReticleLibrary.getInstance().init(applicationContext);
+        // 显示器监听与窗口状态在主线程按命令顺序初始化，排在之前提交的 release 之后
+        module.commands.post(new Runnable() {
+            @Override
+            public void run() {
+                module.initInternal(applicationContext);
+            }
+        });
+        module.restoreLast(applicationContext);
+    }
+
+    /**
+     * 打开预设存储，上次退出时准星正在显示则立即排队恢复显示，不等待 JS 层加载（每个进程只执行一次）
+     */
+    private void restoreLast(Context applicationContext) {
+        if (!restoreAttempted.compareAndSet(false, true)) {
+            return;
+        }
+        ReticlePresetStore store = ReticlePresetStore.getInstance();
+        if (!store.open(applicationContext.getFilesDir())) {
+            return;
+        }
+        if (store.getSetting(ReticlePresetStore.SETTING_AUTO_RESTORE, 1) != 0 && store.isLastShown()) {
+            Log.i("SightOverlay", "恢复上次显示的准星");
+            commands.show(android.view.Display.DEFAULT_DISPLAY,
+                    attachShapes(SightOverlayConfig.fromPacked(store.getLastPacked())), null);
+        }
+    }
+
+    /**
+     * 初始化（内部实现，主线程）
+     */
+    private void initInternal(Context applicationContext) {
+        if (mContext != null) {
+            return;
+        }
+        mContext = applicationContext;
+        registerDisplayCallbacks();
+        renderPolicy.register(mContext);
+        DisplayOverlay overlay = getDisplayOverlay(android.view.Display.DEFAULT_DISPLAY);
+        if (overlay != null) {
+            overlay.updateScreenSize();
+        }
+        Log.i("SightOverlay", "初始化成功");
+    }
+
+    /**
+     * 获取（必要时创建）指定显示器的悬浮窗实例
+     * @return 未初始化或显示器不存在时返回 null
+     */
+    DisplayOverlay getDisplayOverlay(int displayId) {
+        DisplayOverlay overlay = displays.get(displayId);
+        if (overlay != null) {
+            return overlay;
+        }
+        Context context = mContext;
+        if (context == null) {
+            return null;
+        }
+        android.view.Display display = mDisplayManager != null ? mDisplayManager.getDisplay(displayId) : null;
+        if (display == null && displayId != android.view.Display.DEFAULT_DISPLAY) {
+            Log.e("SightOverlay", "显示器不存在: " + displayId);
+            return null;
+        }
+        DisplayOverlay created = new DisplayOverlay(this, context, displayId, display);
+        DisplayOverlay existing = displays.putIfAbsent(displayId, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * 注册显示器与配置变更监听，回调在主线程执行
+     */
+    private void registerDisplayCallbacks() {
+        mDisplayManager = (DisplayManager) mContext.getSystemService(Context.DISPLAY_SERVICE);
+        if (mDisplayManager != null) {
+            mDisplayManager.registerDisplayListener(displayListener, new Handler(Looper.getMainLooper()));
+        }
+        mContext.registerComponentCallbacks(configurationCallbacks);
+    }
+
+    /**
+     * 注销显示器与配置变更监听
+     */
+    private void unregisterDisplayCallbacks() {
+        if (mDisplayManager != null) {
+            mDisplayManager.unregisterDisplayListener(displayListener);
+            mDisplayManager = null;
+        }
+        if (mContext != null) {
+            mContext.unregisterComponentCallbacks(configurationCallbacks);
+        }
+    }
+
+    String getRenderBackend() {
+        return renderBackend;
+    }
+
+    /**
+     * 实际生效的位图缓存设置（渲染策略降级时强制开启）
+     */
+    boolean isRasterCacheEnabled() {
+        return renderPolicy.isRasterCacheEnabled(rasterCacheEnabled);
+    }
+
+    /**
+     * 实际生效的动画模式（渲染策略可能暂停动画）
+     */
+    int getAnimationMode() {
+        return renderPolicy.getAnimationMode(animationMode);
+    }
+
+    /**
+     * 实际生效的动画帧率上限（渲染策略可能降低帧率）
+     */
+    int getAnimationFrameRateCap() {
+        return renderPolicy.getFrameRateCap(animationFrameRateCap);
+    }
+
+    /**
+     * 把实际生效的动画与缓存设置应用到所有显示器（主线程）
+     */
+    private void applyRenderSettings() {
+        int mode = getAnimationMode();
+        int cap = getAnimationFrameRateCap();
+        boolean rasterCache = isRasterCacheEnabled();
+        for (DisplayOverlay overlay : displays.values()) {
+            overlay.setAnimation(mode, cap);
+            overlay.setRasterCacheEnabled(rasterCache);
+        }
+        if (!rasterCache) {
+            ReticleRasterCache.getInstance().clear();
+        }
+    }
+
+    boolean isPersistentWindow() {
+        return persistentWindow;
+    }
+
+    /**
+     * 记录默认显示器上最近一次的配置与显示状态，供下次启动恢复（主线程调用）
+     * 只在 show / hide 时调用，连续 update 不写入存储；显示期间被杀进程时恢复为最近一次 show 的配置
+     */
+    void recordLast(int displayId, SightOverlayConfig config, boolean shown) {
+        if (displayId == android.view.Display.DEFAULT_DISPLAY) {
+            ReticlePresetStore.getInstance().setLast(config.toPacked(), shown);
+        }
+    }
+
+    /**
+     * 所有显示器实例的 update 合并器
+     */
+    private UpdateCoalescer[] getCoalescers() {
+        List<UpdateCoalescer> coalescers = new ArrayList<>();
+        for (DisplayOverlay overlay : displays.values()) {
+            coalescers.add(overlay.getUpdateCoalescer());
+        }
+        return coalescers.toArray(new UpdateCoalescer[0]);
+    }
+
+    /**
+     * 显示悬浮窗
+     */
+    public static void show(String type, String color, double size, double thickness, boolean showDot, double opacity) {
+        showOnDisplay(android.view.Display.DEFAULT_DISPLAY, type, color, size, thickness, showDot, opacity);
+    }
+
+    /**
+     * 在指定显示器上显示悬浮窗，每个显示器独立持有窗口与绘制状态
+     * @param displayId 显示器 ID（见 getDisplays），0 为默认显示器
+     */
+    public static void showOnDisplay(int displayId, String type, String color, double size, double thickness,
+                                     boolean showDot, double opacity) {
+        sight_overlay module = getInstance();
+        module.commands.show(displayId, module.attachShapes(new SightOverlayConfig(type, color, size, thickness, showDot, opacity)), null);
+    }
+
+    /**
+     * 以指定渲染后端显示悬浮窗
+     * @param backend "view"（主线程绘制）或 "surface"（SurfaceView 独立线程绘制），主线程繁忙时后者更平稳
+     */
+    public static void showWithBackend(String type, String color, double size, double thickness, boolean showDot,
+                                       double opacity, String backend) {
+        sight_overlay module = getInstance();
+        module.commands.show(android.view.Display.DEFAULT_DISPLAY,
+                module.attachShapes(new SightOverlayConfig(type, color, size, thickness, showDot, opacity)),
+                BACKEND_SURFACE.equals(backend) ? BACKEND_SURFACE : BACKEND_VIEW);
+    }
+
+    /**
+     * 以紧凑编码和指定渲染后端显示悬浮窗
+     */
+    public static void showPackedWithBackend(double packed, String backend) {
+        sight_overlay module = getInstance();
+        module.commands.show(android.view.Display.DEFAULT_DISPLAY, module.attachShapes(unpackBridged(packed)),
+                BACKEND_SURFACE.equals(backend) ? BACKEND_SURFACE : BACKEND_VIEW);
+    }
+
+    /**
+     * 隐藏悬浮窗
+     */
+    public static void hide() {
+        hideOnDisplay(android.view.Display.DEFAULT_DISPLAY);
+    }
+
+    /**
+     * 隐藏指定显示器上的悬浮窗
+     */
+    public static void hideOnDisplay(int displayId) {
+        getInstance().commands.hide(displayId);
+    }
+
+    /**
+     * 更新悬浮窗配置
+     */
+    public static void update(String type, String color, double size, double thickness, boolean showDot, double opacity) {
+        updateOnDisplay(android.view.Display.DEFAULT_DISPLAY, type, color, size, thickness, showDot, opacity);
+    }
+
+    /**
+     * 更新指定显示器上的悬浮窗配置
+     */
+    public static void updateOnDisplay(int displayId, String type, String color, double size, double thickness,
+                                       boolean showDot, double opacity) {
+        sight_overlay module = getInstance();
+        SightOverlayConfig config = new SightOverlayConfig(type, color, size, thickness, showDot, opacity);
+        module.commands.update(displayId, module.attachShapes(config));
+    }
+
+    /**
+     * 以紧凑编码显示悬浮窗，一次桥接调用只传递一个整数
+     * 编码以 double 接收：JS number 可精确表示 52 位整数，且桥接对 double 参数的转换是确定的
+     * @param packed SightOverlayConfig.toPacked 格式的编码
+     */
+    public static void showPacked(double packed) {
+        showPackedOnDisplay(android.view.Display.DEFAULT_DISPLAY, packed);
+    }
+
+    /**
+     * 以紧凑编码在指定显示器上显示悬浮窗
+     */
+    public static void showPackedOnDisplay(int displayId, double packed) {
+        sight_overlay module = getInstance();
+        module.commands.show(displayId, module.attachShapes(unpackBridged(packed)), null);
+    }
+
+    /**
+     * 以紧凑编码更新悬浮窗配置
+     * @param packed SightOverlayConfig.toPacked 格式的编码
+     */
+    public static void updatePacked(double packed) {
+        updatePackedOnDisplay(android.view.Display.DEFAULT_DISPLAY, packed);
+    }
+
+    /**
+     * 以紧凑编码更新指定显示器上的悬浮窗配置
+     */
+    public static void updatePackedOnDisplay(int displayId, double packed) {
+        sight_overlay module = getInstance();
+        module.commands.update(displayId, module.attachShapes(unpackBridged(packed)));
+    }
+
+    /**
+     * 解码桥接传入的紧凑编码；52 位以内的整数在 double 中精确表示，转换无损
+     */
+    private static SightOverlayConfig unpackBridged(double packed) {
+        return SightOverlayConfig.fromPacked((long) packed);
+    }
+
+    /**
+     * 以多图层准星显示悬浮窗，所有图层绘制在同一个窗口、同一张缓存位图中
+     * @param layersJson JSON 数组：第一项为基础准星（位于中心，其 opacity 作用于整体），
+     *                   其余项为叠加图层，可带 offsetX / offsetY（dp），opacity 为相对透明度
+     * @return 解析是否成功
+     */
+    public static boolean showLayers(String layersJson) {
+        sight_overlay module = getInstance();
+        SightOverlayConfig config = module.parseLayers(layersJson);
+        if (config == null) {
+            return false;
+        }
+        module.commands.show(android.view.Display.DEFAULT_DISPLAY, config, null);
+        return true;
+    }
+
+    /**
+     * 以多图层准星更新悬浮窗配置
+     * @param layersJson 格式同 showLayers
+     * @return 解析是否成功
+     */
+    public static boolean updateLayers(String layersJson) {
+        sight_overlay module = getInstance();
+        SightOverlayConfig config = module.parseLayers(layersJson);
+        if (config == null) {
+            return false;
+        }
+        module.commands.update(android.view.Display.DEFAULT_DISPLAY, config);
+        return true;
+    }
+
+    /**
+     * 获取可用显示器列表
+     * @return JSON 字符串，每项包含 id、name、width、height 与 showing（是否正在显示准星）
+     */
+    public static String getDisplays() {
+        sight_overlay module = getInstance();
+        try {
+            JSONArray list = new JSONArray();
+            DisplayManager displayManager = module.mDisplayManager;
+            android.view.Display[] available = displayManager != null
+                    ? displayManager.getDisplays() : new android.view.Display[0];
+            for (android.view.Display display : available) {
+                JSONObject item = new JSONObject();
+                int id = display.getDisplayId();
+                item.put("id", id);
+                item.put("name", display.getName());
+                DisplayOverlay overlay = module.displays.get(id);
+                // 只读取主线程发布的尺寸快照，不在调用线程上测量
+                long size = overlay != null ? overlay.getPublishedSize() : -1;
+                if (size >= 0) {
+                    item.put("width", (int) (size >>> 32));
+                    item.put("height", (int) size);
+                }
+                item.put("showing", overlay != null && overlay.isShowing());
+                list.put(item);
+            }
+            JSONObject result = new JSONObject();
+            result.put("displays", list);
+            return result.toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取显示器列表失败: " + e.getMessage());
+            return "{\"displays\":[]}";
+        }
+    }
+
+    /**
+     * 获取默认配置的紧凑编码
+     */
+    public static double getDefaultConfigPacked() {
+        return SightDefaults.getDefaultConfigPacked();
+    }
+
+    /**
+     * 设置自定义准星（custom 类型）的图形列表
+     * @param shapesJson JSON 数组，坐标以准星大小为单位，支持 line / arc / dot 图元
+     * @return 解析是否成功
+     */
+    public static boolean setCustomShapes(String shapesJson) {
+        final sight_overlay module = getInstance();
+        try {
+            module.customShapes = ReticleShapeList.fromJson(new JSONArray(shapesJson));
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "自定义准星图形解析失败: " + e.getMessage());
+            return false;
+        }
+
+        // 正在显示自定义准星的显示器立即生效
+        module.commands.post(new Runnable() {
+            @Override
+            public void run() {
+                for (DisplayOverlay overlay : module.displays.values()) {
+                    SightOverlayConfig current = overlay.getCurrentConfig();
+                    if (current != null && current.getTypeId() == SightType.ID_CUSTOM) {
+                        SightOverlayConfig config = new SightOverlayConfig(current.type, current.color,
+                                current.size, current.thickness, current.showDot, current.opacity);
+                        overlay.update(module.attachShapes(config));
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 加载一条准星定义到准星库
+     * @param definitionJson 版本化的准星定义（见 ReticleCompiler）
+     * @return 定义名称，失败返回 null
+     */
+    public static String loadReticle(String definitionJson) {
+        try {
+            return ReticleLibrary.getInstance().load(definitionJson).name;
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "加载准星定义失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 加载目录下的所有准星定义（*.json），编译结果缓存在应用私有目录
+     * 定义较多时建议在后台线程调用
+     * @return 成功加载的数量
+     */
+    public static int loadReticleDirectory(String path) {
+        return ReticleLibrary.getInstance().loadDirectory(new File(path));
+    }
 
-        // 绘制中心点（dot类型除外）
-        if (config.showDot && !"dot".equals(config.type)) {
-            canvas.drawCircle(centerX, centerY, dotSizePx, dotPaint);
+    /**
+     * 获取已加载的准星定义名称列表
+     * @return JSON 字符串
+     */
+    public static String getReticleNames() {
+        try {
+            JSONObject result = new JSONObject();
+            result.put("names", new JSONArray(ReticleLibrary.getInstance().getNames()));
+            return result.toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取准星定义列表失败: " + e.getMessage());
+            return "{\"names\":[]}";
         }
     }
 
     /**
-     * 绘制十字准星
+     * 以准星库中的定义及其样式显示悬浮窗
+     * @return 定义是否存在
      */
-    private void drawCross(Canvas canvas, float centerX, float centerY, float sizePx, float gap) {
-        // 上
-        canvas.drawLine(centerX, centerY - sizePx, centerX, centerY - gap, paint);
-        // 下
-        canvas.drawLine(centerX, centerY + gap, centerX, centerY + sizePx, paint);
-        // 左
-        canvas.drawLine(centerX - sizePx, centerY, centerX - gap, centerY, paint);
-        // 右
-        canvas.drawLine(centerX + gap, centerY, centerX + sizePx, centerY, paint);
+    public static boolean showReticle(String name) {
+        ReticleDefinition definition = ReticleLibrary.getInstance().get(name);
+        if (definition == null) {
+            Log.e("SightOverlay", "准星定义不存在: " + name);
+            return false;
+        }
+        getInstance().commands.show(android.view.Display.DEFAULT_DISPLAY, definition.createConfig(), null);
+        return true;
     }
 
     /**
-     * 绘制单点准星
+     * 保存准星预设到原生存储（覆盖同名预设）
+     * @param name 预设名称，UTF-8 编码不超过 255 字节
+     * @param packed SightOverlayConfig.toPacked 格式的编码
+     * @return 是否保存成功
      */
-    private void drawDotOnly(Canvas canvas, float centerX, float centerY, float dotSizePx) {
-        canvas.drawCircle(centerX, centerY, dotSizePx * 2, dotPaint);
+    public static boolean savePreset(String name, double packed) {
+        return ReticlePresetStore.getInstance().putPreset(name, (long) packed);
     }
 
     /**
-     * 绘制战术准星
+     * 删除准星预设
+     * @return 预设是否存在
      */
-    private void drawTactical(Canvas canvas, float centerX, float centerY, float sizePx) {
-        float innerRadius = sizePx * 0.3f;
-
-        // 内圆
-        canvas.drawCircle(centerX, centerY, innerRadius, paint);
-
-        // 外围短线
-        // 左
-        canvas.drawLine(centerX - sizePx, centerY, centerX - sizePx * 0.5f, centerY, paint);
-        // 右
-        canvas.drawLine(centerX + sizePx * 0.5f, centerY, centerX + sizePx, centerY, paint);
-        // 上
-        canvas.drawLine(centerX, centerY - sizePx, centerX, centerY - sizePx * 0.5f, paint);
-        // 下
-        canvas.drawLine(centerX, centerY + sizePx * 0.5f, centerX, centerY + sizePx, paint);
+    public static boolean deletePreset(String name) {
+        return ReticlePresetStore.getInstance().deletePreset(name);
     }
 
     /**
-     * 绘制圆形准星
+     * 获取所有准星预设
+     * @return JSON 字符串，按保存顺序列出 name 与 packed（紧凑编码）
      */
-    private void drawCircle(Canvas canvas, float centerX, float centerY, float sizePx) {
-        // 设置虚线效果
-        float dashWidth = sizePx * 0.5f;
-        float gapWidth = sizePx * 0.3f;
-        DashPathEffect dashEffect = new DashPathEffect(new float[]{dashWidth, gapWidth}, 0);
-        paint.setPathEffect(dashEffect);
-
-        canvas.drawCircle(centerX, centerY, sizePx, paint);
-
-        // 重置虚线效果
-        paint.setPathEffect(null);
+    public static String getPresets() {
+        try {
+            JSONArray list = new JSONArray();
+            for (Map.Entry<String, Long> entry : ReticlePresetStore.getInstance().getPresets().entrySet()) {
+                JSONObject item = new JSONObject();
+                item.put("name", entry.getKey());
+                item.put("packed", entry.getValue().longValue());
+                list.put(item);
+            }
+            JSONObject result = new JSONObject();
+            result.put("presets", list);
+            return result.toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取预设列表失败: " + e.getMessage());
+            return "{\"presets\":[]}";
+        }
     }
 
     /**
-     * 绘制方括号准星
+     * 以预设显示悬浮窗
+     * @return 预设是否存在
      */
-    private void drawBracket(Canvas canvas, float centerX, float centerY, float sizePx) {
-        float offset = sizePx * 0.6f;
-        float density = getResources().getDisplayMetrics().density;
-        float lineLength = sizePx - offset;
-
-        // 左上
-        canvas.drawLine(centerX - sizePx, centerY - offset, centerX - sizePx, centerY - sizePx, paint);
-        canvas.drawLine(centerX - sizePx, centerY - sizePx, centerX - offset, centerY - sizePx, paint);
-        // 右上
-        canvas.drawLine(centerX + offset, centerY - sizePx, centerX + sizePx, centerY - sizePx, paint);
-        canvas.drawLine(centerX + sizePx, centerY - sizePx, centerX + sizePx, centerY - offset, paint);
-        // 左下
-        canvas.drawLine(centerX - sizePx, centerY + offset, centerX - sizePx, centerY + sizePx, paint);
-        canvas.drawLine(centerX - sizePx, centerY + sizePx, centerX - offset, centerY + sizePx, paint);
-        // 右下
-        canvas.drawLine(centerX + offset, centerY + sizePx, centerX + sizePx, centerY + sizePx, paint);
-        canvas.drawLine(centerX + sizePx, centerY + sizePx, centerX + sizePx, centerY + offset, paint);
+    public static boolean showPreset(String name) {
+        Long packed = ReticlePresetStore.getInstance().getPreset(name);
+        if (packed == null) {
+            Log.e("SightOverlay", "预设不存在: " + name);
+            return false;
+        }
+        showPacked(packed);
+        return true;
     }
 
     /**
-     * 绘制V形准星
+     * 获取最近一次显示的配置
+     * @return 紧凑编码，没有记录时返回 -1
      */
-    private void drawChevron(Canvas canvas, float centerX, float centerY, float sizePx) {
-        Path path = new Path();
-        // V形
-        path.moveTo(centerX - sizePx * 0.6f, centerY - sizePx * 0.3f);
-        path.lineTo(centerX, centerY + sizePx * 0.5f);
-        path.lineTo(centerX + sizePx * 0.6f, centerY - sizePx * 0.3f);
-
-        // 上方短线
-        path.moveTo(centerX, centerY - sizePx);
-        path.lineTo(centerX, centerY - sizePx * 0.3f);
-
-        canvas.drawPath(path, paint);
+    public static double getLastConfigPacked() {
+        ReticlePresetStore store = ReticlePresetStore.getInstance();
+        return store.hasLast() ? store.getLastPacked() : -1;
     }
 
     /**
-     * 绘制象限准星
+     * 设置 init 时是否自动恢复上次退出时正在显示的准星（默认开启，设置持久保存）
      */
-    private void drawQuadrant(Canvas canvas, float centerX, float centerY, float sizePx) {
-        float width = getWidth();
-        float height = getHeight();
-
-        // 象限准星：从中心向四个方向延伸到屏幕边缘
-        // 右侧水平线 - 从中心延伸到右边缘
-        canvas.drawLine(centerX, centerY, width, centerY, paint);
-        // 上方垂直线 - 从中心延伸到顶部边缘
-        canvas.drawLine(centerX, centerY, centerX, 0, paint);
-        // 左侧水平线 - 从中心延伸到左边缘
-        canvas.drawLine(centerX, centerY, 0, centerY, paint);
-        // 下方垂直线 - 从中心延伸到底部边缘
-        canvas.drawLine(centerX, centerY, centerX, height, paint);
+    public static void setAutoRestore(boolean enabled) {
+        ReticlePresetStore.getInstance().putSetting(ReticlePresetStore.SETTING_AUTO_RESTORE, enabled ? 1 : 0);
     }
-}
-
-/**
- * 悬浮窗管理器模块
- */
-public class sight_overlay {
 
-    private static sight_overlay instance;
-    private Context mContext;
-    private WindowManager mWindowManager;
-    private OverlayView mOverlayView;
-    private String currentType = "cross"; // 保存当前准星类型
-    private int screenWidth = 0;
-    private int screenHeight = 0;
-    private int screenOrientation = Configuration.ORIENTATION_PORTRAIT; // 屏幕方向
-    private int rotation = 0; // 屏幕旋转角度
+    /**
+     * 在后台线程从预设包导入预设（流式读取，逐条校验，同名覆盖）
+     * @param path 预设包文件路径
+     * @return 是否已开始；已有导入导出进行中时返回 false
+     */
+    public static boolean importPresets(String path) {
+        return getInstance().startPresetTransfer(ReticlePresetTransfer.importFrom(new File(path), null));
+    }
 
-    private sight_overlay() {
+    /**
+     * 在后台线程把所有预设导出为预设包
+     * @param path 目标文件路径
+     * @return 是否已开始；已有导入导出进行中时返回 false
+     */
+    public static boolean exportPresets(String path) {
+        return getInstance().startPresetTransfer(ReticlePresetTransfer.exportTo(new File(path), null));
     }
 
-    public static sight_overlay getInstance() {
-        if (instance == null) {
-            synchronized (sight_overlay.class) {
-                if (instance == null) {
-                    instance = new sight_overlay();
-                }
-            }
+    /**
+     * 获取最近一次预设导入导出的进度与条目错误
+     * @return JSON 字符串，见 ReticlePresetTransfer.toJson；从未执行时返回 {}
+     */
+    public static String getPresetTransferStatus() {
+        ReticlePresetTransfer transfer = getInstance().presetTransfer.get();
+        if (transfer == null) {
+            return "{}";
+        }
+        try {
+            return transfer.toJson().toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取预设导入导出状态失败: " + e.getMessage());
+            return "{}";
         }
-        return instance;
     }
 
     /**
-     * 初始化悬浮窗管理器
+     * 取消进行中的预设导入导出，已导入的条目保留
      */
-    public static void init(Context context) {
-        sight_overlay module = getInstance();
-        if (module.mContext == null) {
-            module.mContext = context.getApplicationContext();
-            module.mWindowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-            module.updateScreenSize();
-            Log.i("SightOverlay", "初始化成功");
+    public static void cancelPresetTransfer() {
+        ReticlePresetTransfer transfer = getInstance().presetTransfer.get();
+        if (transfer != null) {
+            transfer.cancel();
         }
     }
 
     /**
-     * 获取屏幕旋转角度
+     * 获取 update 合并统计
+     * @return JSON 字符串，包含收到、实际应用和被合并丢弃的更新次数
      */
-    private void updateScreenRotation() {
-        if (mWindowManager != null) {
-            android.view.Display display = mWindowManager.getDefaultDisplay();
-            if (display != null) {
-                rotation = display.getRotation();
-                String rotationStr;
-                switch (rotation) {
-                    case android.view.Surface.ROTATION_0:
-                        rotationStr = "0° (竖屏)";
-                        break;
-                    case android.view.Surface.ROTATION_90:
-                        rotationStr = "90° (横屏)";
-                        break;
-                    case android.view.Surface.ROTATION_180:
-                        rotationStr = "180° (倒竖屏)";
-                        break;
-                    case android.view.Surface.ROTATION_270:
-                        rotationStr = "270° (倒横屏)";
-                        break;
-                    default:
-                        rotationStr = "未知";
-                        break;
-                }
-                Log.i("SightOverlay", "屏幕旋转: " + rotationStr);
-            }
+    public static String getUpdateStats() {
+        long received = 0;
+        long applied = 0;
+        long dropped = 0;
+        for (UpdateCoalescer coalescer : getInstance().getCoalescers()) {
+            received += coalescer.getReceivedCount();
+            applied += coalescer.getAppliedCount();
+            dropped += coalescer.getDroppedCount();
+        }
+        try {
+            JSONObject stats = new JSONObject();
+            stats.put("received", received);
+            stats.put("applied", applied);
+            stats.put("dropped", dropped);
+            OverlayCommandQueue commands = getInstance().commands;
+            JSONObject commandStats = new JSONObject();
+            commandStats.put("enqueued", commands.getEnqueuedCount());
+            commandStats.put("executed", commands.getExecutedCount());
+            commandStats.put("collapsed", commands.getCollapsedCount());
+            stats.put("commands", commandStats);
+            return stats.toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取更新统计失败: " + e.getMessage());
+            return "{}";
         }
     }
 
     /**
-     * 获取屏幕方向（横屏/竖屏）
+     * 获取悬浮窗运行指标快照
+     * @return JSON 字符串：draw（绘制次数、平均/分位/最大耗时微秒及非空直方图桶 [上界, 次数, ...]）、
+     *         invalidates 重绘请求次数、window 窗口增删及调整次数、updates 合并统计
      */
-    private void updateScreenOrientation() {
-        if (mContext != null) {
-            screenOrientation = mContext.getResources().getConfiguration().orientation;
-            String orientationStr = (screenOrientation == Configuration.ORIENTATION_LANDSCAPE)
-                    ? "横屏" : "竖屏";
-            Log.i("SightOverlay", "屏幕方向: " + orientationStr);
+    public static String getMetrics() {
+        try {
+            return OverlayMetrics.getInstance().snapshot(getInstance().getCoalescers()).toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取运行指标失败: " + e.getMessage());
+            return "{}";
         }
     }
 
     /**
-     * 更新屏幕尺寸（考虑旋转）
+     * 清零运行指标
      */
-    private void updateScreenSize() {
-        if (mWindowManager != null) {
-            // 先获取当前旋转角度和方向
-            updateScreenRotation();
-            updateScreenOrientation();
-
-            android.view.Display display = mWindowManager.getDefaultDisplay();
-            android.graphics.Point screenSize = new android.graphics.Point();
-            display.getSize(screenSize);
+    public static void resetMetrics() {
+        OverlayMetrics.getInstance().reset();
+    }
 
-            // 横屏时需要交换宽高，确保 width > height
-            if (isLandscape()) {
-                screenWidth = Math.max(screenSize.x, screenSize.y);
-                screenHeight = Math.min(screenSize.x, screenSize.y);
-            } else {
-                screenWidth = screenSize.x;
-                screenHeight = screenSize.y;
+    /**
+     * 设置准星动画
+     * @param modes 逗号分隔的动画组合：breathe（中心点呼吸）、rotate（旋转）、pulse（颜色变化时脉冲），空字符串关闭动画
+     * @param frameRateCap 动画帧率上限（30 / 60 / 120），与屏幕刷新率无关，0 表示跟随屏幕刷新率
+     */
+    public static void setAnimation(String modes, int frameRateCap) {
+        final sight_overlay module = getInstance();
+        final int mode = ReticleAnimator.parseMode(modes);
+        final int cap = Math.max(0, frameRateCap);
+        module.commands.post(new Runnable() {
+            @Override
+            public void run() {
+                module.animationMode = mode;
+                module.animationFrameRateCap = cap;
+                for (DisplayOverlay overlay : module.displays.values()) {
+                    overlay.setAnimation(module.getAnimationMode(), module.getAnimationFrameRateCap());
+                }
             }
-
-            String orientationStr = (screenOrientation == Configuration.ORIENTATION_LANDSCAPE)
-                    ? "横屏" : "竖屏";
-            Log.i("SightOverlay", "屏幕尺寸: " + screenWidth + "x" + screenHeight + " (" + orientationStr + ")");
-        }
+        });
     }
 
     /**
-     * 判断是否为横屏
+     * 设置是否启用功耗与温控渲染策略（默认开启）
+     * 关闭后不再因亮灭屏、省电模式或温控状态调整动画与缓存
      */
-    private boolean isLandscape() {
-        return screenOrientation == Configuration.ORIENTATION_LANDSCAPE || rotation == android.view.Surface.ROTATION_90 || rotation == android.view.Surface.ROTATION_270;
+    public static void setRenderPolicyEnabled(final boolean enabled) {
+        final sight_overlay module = getInstance();
+        module.commands.post(new Runnable() {
+            @Override
+            public void run() {
+                module.renderPolicy.setEnabled(enabled);
+            }
+        });
     }
 
     /**
-     * 显示悬浮窗
+     * 获取当前渲染策略
+     * @return JSON 字符串：enabled、level（full / reduced / minimal / suspended）、screenOn、powerSave、
+     *         thermalStatus（PowerManager.THERMAL_STATUS_*，Android 10 以下为 0），
+     *         以及实际生效的 animationMode、frameRateCap 与 rasterCache
      */
-    public static void show(String type, String color, double size, double thickness, boolean showDot, double opacity) {
-        getInstance().showInternal(type, color, size, thickness, showDot, opacity);
+    public static String getRenderPolicy() {
+        sight_overlay module = getInstance();
+        try {
+            JSONObject result = module.renderPolicy.toJson();
+            result.put("animationMode", module.getAnimationMode());
+            result.put("frameRateCap", module.getAnimationFrameRateCap());
+            result.put("rasterCache", module.isRasterCacheEnabled());
+            return result.toString();
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "获取渲染策略失败: " + e.getMessage());
+            return "{}";
+        }
     }
 
     /**
-     * 隐藏悬浮窗
+     * 设置是否启用位图缓存模式
+     * 启用后静态准星只栅格化一次，重绘时直接贴图；切换预设时复用最近使用的位图
      */
-    public static void hide() {
-        getInstance().hideInternal();
+    public static void setRasterCacheEnabled(final boolean enabled) {
+        final sight_overlay module = getInstance();
+        module.commands.post(new Runnable() {
+            @Override
+            public void run() {
+                module.rasterCacheEnabled = enabled;
+                boolean effective = module.isRasterCacheEnabled();
+                for (DisplayOverlay overlay : module.displays.values()) {
+                    overlay.setRasterCacheEnabled(effective);
+                }
+                if (!effective) {
+                    ReticleRasterCache.getInstance().clear();
+                }
+            }
+        });
     }
 
     /**
-     * 更新悬浮窗配置
+     * 设置常驻窗口模式
+     * 开启后 hide 不移除窗口，只隐藏视图并保留绘制状态与位图缓存，再次 show 时直接切换为可见，
+     * 省去窗口创建、Surface 分配与首帧绘制；切换延迟见 getMetrics 的 toggle 项
      */
-    public static void update(String type, String color, double size, double thickness, boolean showDot, double opacity) {
-        getInstance().updateInternal(type, color, size, thickness, showDot, opacity);
+    public static void setPersistentWindow(final boolean enabled) {
+        final sight_overlay module = getInstance();
+        module.commands.post(new Runnable() {
+            @Override
+            public void run() {
+                module.persistentWindow = enabled;
+                if (!enabled) {
+                    for (DisplayOverlay overlay : module.displays.values()) {
+                        overlay.removeIfHidden();
+                    }
+                }
+            }
+        });
     }
 
     /**
@@ -531,146 +5790,127 @@ public class sight_overlay {
     }
 
     /**
-     * 获取支持的准星类型列表
+     * 获取支持的准星类型列表（首次调用后缓存）
      * @return JSON 字符串，包含所有支持的准星类型
      */
     public static String getSupportedTypes() {
-        try {
-            JSONArray types = new JSONArray();
-            for (String type : SightType.getSupportedTypes()) {
-                types.put(type);
-            }
-            JSONObject result = new JSONObject();
-            result.put("types", types);
-            return result.toString();
-        } catch (JSONException e) {
-            Log.e("SightOverlay", "获取支持类型失败: " + e.getMessage());
-            return "{\"types\":[]}";
-        }
+        return SightMetadata.getSupportedTypesJson();
     }
 
     /**
-     * 获取默认配置
+     * 获取默认配置（首次调用后缓存）
      * @return JSON 字符串，包含默认配置
      */
     public static String getDefaultConfig() {
-        return SightDefaults.getDefaultConfigJson().toString();
+        return SightMetadata.getDefaultConfigJson();
     }
 
     /**
-     * 获取可配置参数的元信息
+     * 获取可配置参数的元信息（首次调用后缓存）
      * @return JSON 字符串，描述每个可配置参数的类型和取值范围
      */
     public static String getConfigMetadata() {
-        try {
-            JSONObject metadata = new JSONObject();
-
-            // type 参数
-            JSONObject typeInfo = new JSONObject();
-            typeInfo.put("type", "string");
-            typeInfo.put("description", "准星类型");
-            typeInfo.put("enum", new JSONArray(SightType.getSupportedTypes()));
-            typeInfo.put("default", SightDefaults.DEFAULT_TYPE);
-            metadata.put("type", typeInfo);
-
-            // color 参数
-            JSONObject colorInfo = new JSONObject();
-            colorInfo.put("type", "string");
-            colorInfo.put("description", "准星颜色（十六进制格式）");
-            colorInfo.put("pattern", "^#[0-9A-Fa-f]{6}$");
-            colorInfo.put("default", SightDefaults.DEFAULT_COLOR);
-            colorInfo.put("examples", new JSONArray(new String[]{"#00FF00", "#FF0000", "#00FFFF", "#FFFF00", "#FF00FF"}));
-            metadata.put("color", colorInfo);
-
-            // size 参数
-            JSONObject sizeInfo = new JSONObject();
-            sizeInfo.put("type", "number");
-            sizeInfo.put("description", "准星大小（像素）");
-            sizeInfo.put("min", 5);
-            sizeInfo.put("max", 100);
-            sizeInfo.put("default", SightDefaults.DEFAULT_SIZE);
-            metadata.put("size", sizeInfo);
-
-            // thickness 参数
-            JSONObject thicknessInfo = new JSONObject();
-            thicknessInfo.put("type", "number");
-            thicknessInfo.put("description", "准星粗细（像素）");
-            thicknessInfo.put("min", 1);
-            thicknessInfo.put("max", 10);
-            thicknessInfo.put("default", SightDefaults.DEFAULT_THICKNESS);
-            metadata.put("thickness", thicknessInfo);
-
-            // showDot 参数
-            JSONObject showDotInfo = new JSONObject();
-            showDotInfo.put("type", "boolean");
-            showDotInfo.put("description", "是否显示中心点");
-            showDotInfo.put("default", SightDefaults.DEFAULT_SHOW_DOT);
-            metadata.put("showDot", showDotInfo);
-
-            // opacity 参数
-            JSONObject opacityInfo = new JSONObject();
-            opacityInfo.put("type", "number");
-            opacityInfo.put("description", "准星透明度（0-1）");
-            opacityInfo.put("min", 0.1);
-            opacityInfo.put("max", 1.0);
-            opacityInfo.put("default", SightDefaults.DEFAULT_OPACITY);
-            metadata.put("opacity", opacityInfo);
+        return SightMetadata.getConfigMetadataJson();
+    }
 
-            return metadata.toString();
-        } catch (JSONException e) {
-            Log.e("SightOverlay", "获取配置元信息失败: " + e.getMessage());
-            return "{}";
+    /**
+     * 预热：在后台线程生成元信息缓存、加载绘制相关类，并编译、栅格化默认准星，
+     * 使之后的首次 show 直接命中位图缓存；需在 init 之后调用，重复调用只执行一次
+     */
+    public static void prewarm() {
+        final sight_overlay module = getInstance();
+        final Context context = module.appContext;
+        if (context == null) {
+            Log.e("SightOverlay", "悬浮窗未初始化，请先调用 init");
+            return;
+        }
+        if (!module.prewarmStarted.compareAndSet(false, true)) {
+            return;
         }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                long start = System.nanoTime();
+                SightMetadata.getSupportedTypesJson();
+                SightMetadata.getDefaultConfigJson();
+                SightMetadata.getConfigMetadataJson();
+                float density = context.getResources().getDisplayMetrics().density;
+                SightRenderState state = new SightRenderState(SightDefaults.createDefaultConfig(), density);
+                new ReticlePainter().setState(state);
+                if (module.isRasterCacheEnabled() && ReticleRasterCache.isCacheable(state)) {
+                    ReticleRasterCache.getInstance().obtain(state);
+                }
+                long elapsed = System.nanoTime() - start;
+                OverlayMetrics.getInstance().recordPrewarm(elapsed);
+                Log.i("SightOverlay", "预热完成, 耗时: " + elapsed / 1000 + "us");
+            }
+        }, "SightOverlay.Prewarm");
+        thread.start();
     }
 
     /**
      * 释放资源
      */
     public static void release() {
-        getInstance().releaseInternal();
+        getInstance().commands.release();
     }
 
     /**
-     * 创建布局参数
+     * 自定义准星未携带图形时，附加当前设置的图形列表
      */
-    private WindowManager.LayoutParams createLayoutParams() {
-        int type;
-        if (Build.VERSION.SDK_INT >= 26) {
-            type = WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY;
-        } else {
-            type = WindowManager.LayoutParams.TYPE_PHONE;
+    private SightOverlayConfig attachShapes(SightOverlayConfig config) {
+        if (config.shapes == null && config.getTypeId() == SightType.ID_CUSTOM) {
+            config.shapes = customShapes;
         }
+        return config;
+    }
 
-        int flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
-                WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE |
-                WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
-                WindowManager.LayoutParams.FLAG_FULLSCREEN;
-
-        // 象限准星需要全屏，其他准星使用 200x200
-        int width = 200;
-        int height = 200;
-        if ("quadrant".equals(currentType)) {
-            width = this.screenWidth;
-            height = this.screenHeight;
-            Log.i("SightOverlay", "象限准星使用全屏尺寸: " + width + "x" + height);
+    /**
+     * 同一时间只允许一个预设导入导出任务
+     */
+    private boolean startPresetTransfer(ReticlePresetTransfer transfer) {
+        ReticlePresetTransfer current = presetTransfer.get();
+        if (current != null && current.isRunning()) {
+            Log.e("SightOverlay", "已有预设导入导出正在进行");
+            return false;
         }
+        if (!presetTransfer.compareAndSet(current, transfer)) {
+            return false;
+        }
+        transfer.start();
+        return true;
+    }
 
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                width, // width
-                height, // height
-                type,
-                flags,
-                PixelFormat.TRANSLUCENT
-        );
-        params.gravity = Gravity.CENTER;
-
-        return params;
+    /**
+     * 解析多图层准星，第一项为基础准星，其余为叠加图层
+     * @return 解析失败或为空时返回 null
+     */
+    private SightOverlayConfig parseLayers(String layersJson) {
+        try {
+            JSONArray array = new JSONArray(layersJson);
+            if (array.length() == 0) {
+                Log.e("SightOverlay", "图层列表为空");
+                return null;
+            }
+            SightOverlayConfig base = attachShapes(SightOverlayConfig.fromJson(array.getJSONObject(0)));
+            base.layers = ReticleLayerList.fromJson(array, 1);
+            if (base.layers != null) {
+                for (int i = 0; i < base.layers.size(); i++) {
+                    attachShapes(base.layers.configAt(i));
+                }
+            }
+            return base;
+        } catch (JSONException e) {
+            Log.e("SightOverlay", "图层列表解析失败: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
      * 显示悬浮窗（内部实现）
      */
-    private void showInternal(String type, String color, double size, double thickness, boolean showDot, double opacity) {
+    private void showInternal(int displayId, SightOverlayConfig config, long requestNanos) {
         if (mContext == null) {
             Log.e("SightOverlay", "悬浮窗未初始化，请先调用 init");
             return;
@@ -682,64 +5922,19 @@ public class sight_overlay {
             return;
         }
 
-        try {
-            // 先获取屏幕方向和尺寸
-            updateScreenSize();
-
-            // 保存当前类型
-            this.currentType = type;
-
-            // 隐藏已存在的悬浮窗
-            hideInternal();
-
-            SightOverlayConfig config = new SightOverlayConfig(type, color, size, thickness, showDot, opacity);
-
-            // 创建新视图
-            mOverlayView = new OverlayView(mContext);
-            mOverlayView.setConfig(config);
-
-            // 添加到窗口（此时 createLayoutParams 会使用最新获取的屏幕尺寸）
-            WindowManager.LayoutParams params = createLayoutParams();
-            mWindowManager.addView(mOverlayView, params);
-
-            Log.i("SightOverlay", "悬浮窗显示成功, 类型: " + type + ", 尺寸: " + params.width + "x" + params.height);
-        } catch (Exception e) {
-            Log.e("SightOverlay", "显示悬浮窗失败: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * 隐藏悬浮窗（内部实现）
-     */
-    private void hideInternal() {
-        try {
-            if (mOverlayView != null && mWindowManager != null) {
-                mWindowManager.removeView(mOverlayView);
-                mOverlayView = null;
-            }
-        } catch (Exception e) {
-            Log.e("SightOverlay", "隐藏悬浮窗失败: " + e.getMessage());
+        DisplayOverlay overlay = getDisplayOverlay(displayId);
+        if (overlay != null) {
+            overlay.show(config, requestNanos);
         }
     }
 
     /**
-     * 更新悬浮窗配置（内部实现）
+     * 更新悬浮窗配置（内部实现），未显示的显示器忽略
      */
-    private void updateInternal(String type, String color, double size, double thickness, boolean showDot, double opacity) {
-        // 检查是否需要切换全屏模式（象限准星需要全屏）
-        boolean wasFullScreen = "quadrant".equals(currentType);
-        boolean isFullScreen = "quadrant".equals(type);
-
-        // 如果全屏模式改变，需要重新创建悬浮窗
-        if (wasFullScreen != isFullScreen) {
-            showInternal(type, color, size, thickness, showDot, opacity);
-            return;
-        }
-
-        SightOverlayConfig config = new SightOverlayConfig(type, color, size, thickness, showDot, opacity);
-        if (mOverlayView != null) {
-            mOverlayView.setConfig(config);
+    private void updateInternal(int displayId, SightOverlayConfig config) {
+        DisplayOverlay overlay = displays.get(displayId);
+        if (overlay != null) {
+            overlay.update(config);
         }
     }
 
@@ -747,11 +5942,12 @@ public class sight_overlay {
      * 检查悬浮窗权限（内部实现）
      */
     private boolean checkPermissionInternal() {
-        if (mContext == null) {
+        Context context = appContext;
+        if (context == null) {
             return false;
         }
         if (Build.VERSION.SDK_INT >= 23) {
-            return Settings.canDrawOverlays(mContext);
+            return Settings.canDrawOverlays(context);
         }
         return true;
     }
@@ -760,7 +5956,8 @@ public class sight_overlay {
      * 请求悬浮窗权限（内部实现）
      */
     private void requestPermissionInternal() {
-        if (mContext == null) {
+        Context context = appContext;
+        if (context == null) {
             Log.e("SightOverlay", "悬浮窗未初始化");
             return;
         }
@@ -773,22 +5970,22 @@ public class sight_overlay {
         // Android 6.0+ 需要跳转到设置页面
         if (Build.VERSION.SDK_INT >= 23) {
             try {
-                String packageName = mContext.getPackageName();
+                String packageName = context.getPackageName();
                 Intent intent = new Intent(
                         Settings.ACTION_MANAGE_OVERLAY_PERMISSION,
                         Uri.parse("package:" + packageName)
                 );
                 intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                mContext.startActivity(intent);
+                context.startActivity(intent);
                 Log.i("SightOverlay", "已发起悬浮窗权限请求");
             } catch (Exception e) {
                 Log.e("SightOverlay", "请求悬浮窗权限失败: " + e.getMessage());
                 // 如果直接跳转失败，尝试打开应用的详细设置页面作为备用方案
                 try {
                     Intent intent = new Intent(Settings.ACTION_APPLICATION_DETAILS_SETTINGS);
-                    intent.setData(Uri.parse("package:" + mContext.getPackageName()));
+                    intent.setData(Uri.parse("package:" + context.getPackageName()));
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    mContext.startActivity(intent);
+                    context.startActivity(intent);
                 } catch (Exception e2) {
                     Log.e("SightOverlay", "打开应用详情设置也失败了: " + e2.getMessage());
                 }
@@ -800,8 +5997,14 @@ public class sight_overlay {
      * 释放资源（内部实现）
      */
     private void releaseInternal() {
-        hideInternal();
+        for (DisplayOverlay overlay : displays.values()) {
+            overlay.removeWindows();
+        }
+        displays.clear();
+        ReticleRasterCache.getInstance().clear();
+        ReticleRenderThread.shutdown();
+        unregisterDisplayCallbacks();
+        renderPolicy.unregister();
         mContext = null;
-        mWindowManager = null;
     }
 }
@@ -2,7 +2,44 @@
  * 悬浮窗工具类 - JS 桥接模式调用原生 Android 代码
  */
 
-import type { SightConfig } from '../types/sight';
+import type { SightConfig, SightType } from '../types/sight';
+
+/**
+ * 紧凑编码使用的类型序号表：下标即紧凑编码中 3 位类型字段的值，
+ * 必须与原生 SightType.ID_CROSS … ID_CUSTOM 常量一一对应，只能追加，不可调整顺序
+ */
+const SIGHT_TYPE_ORDINALS: SightType[] = [
+  'cross',
+  'dot',
+  'tactical',
+  'circle',
+  'bracket',
+  'chevron',
+  'quadrant',
+  'custom',
+];
+
+/** 将数值四舍五入并限制在 [0, max] */
+function clampField(value: number, max: number): number {
+  return Math.max(0, Math.min(Math.round(value), max));
+}
+
+/**
+ * 将准星配置编码为 52 位整数，与原生 SightOverlayConfig.toPacked 格式一致
+ * 从高到低：类型序号 3 位 | RGB 24 位 | 大小×10 10 位 | 粗细×10 7 位 | 透明度×100 7 位 | 中心点 1 位
+ * JS 位运算只有 32 位，这里用乘法拼接，52 位整数仍可被 number 精确表示
+ */
+export function packSightConfig(config: SightConfig): number {
+  const type = Math.max(SIGHT_TYPE_ORDINALS.indexOf(config.type), 0);
+  const rgb = parseInt(config.color.slice(1, 7), 16) || 0;
+  let packed = type;
+  packed = packed * 16777216 + rgb;
+  packed = packed * 1024 + clampField(config.size * 10, 1023);
+  packed = packed * 128 + clampField(config.thickness * 10, 127);
+  packed = packed * 128 + clampField(config.opacity * 100, 100);
+  packed = packed * 2 + (config.showDot ? 1 : 0);
+  return packed;
+}
 
 // #ifdef APP-PLUS
 /**
@@ -10,6 +47,8 @@ import type { SightConfig } from '../types/sight';
  */
 class SightOverlayNative {
   private moduleClass: any = null;
+  /** 紧凑编码桥接是否可用，首次调用失败后改用逐字段调用 */
+  private packedSupported = true;
 
   constructor() {
     try {
@@ -49,6 +88,24 @@ class SightOverlayNative {
     }
   }
 
+  /**
+   * 以紧凑编码显示悬浮窗
+   * @returns 是否已通过紧凑编码调用，返回 false 时调用方需回退到 show
+   */
+  showPacked(packed: number): boolean {
+    if (this.moduleClass && this.packedSupported) {
+      try {
+        // 调用静态方法 showPacked，一次桥接只传一个整数（原生以 double 接收）
+        this.moduleClass.showPacked(packed);
+        return true;
+      } catch (e) {
+        console.warn('紧凑编码桥接不可用，回退到逐字段调用:', e);
+        this.packedSupported = false;
+      }
+    }
+    return false;
+  }
+
   /**
    * 隐藏悬浮窗
    */
@@ -69,6 +126,24 @@ class SightOverlayNative {
     }
   }
 
+  /**
+   * 以紧凑编码更新悬浮窗
+   * @returns 是否已通过紧凑编码调用，返回 false 时调用方需回退到 update
+   */
+  updatePacked(packed: number): boolean {
+    if (this.moduleClass && this.packedSupported) {
+      try {
+        // 调用静态方法 updatePacked，一次桥接只传一个整数（原生以 double 接收）
+        this.moduleClass.updatePacked(packed);
+        return true;
+      } catch (e) {
+        console.warn('紧凑编码桥接不可用，回退到逐字段调用:', e);
+        this.packedSupported = false;
+      }
+    }
+    return false;
+  }
+
   /**
    * 检查权限
    */
@@ -226,14 +301,16 @@ export class SightOverlayManager {
     try {
       this.config = config;
       console.log('显示悬浮窗:', config);
-      sightOverlayNative.show(
-        config.type,
-        config.color,
-        config.size,
-        config.thickness,
-        config.showDot,
-        config.opacity
-      );
+      if (!sightOverlayNative.showPacked(packSightConfig(config))) {
+        sightOverlayNative.show(
+          config.type,
+          config.color,
+          config.size,
+          config.thickness,
+          config.showDot,
+          config.opacity
+        );
+      }
     } catch (e) {
       console.error('显示悬浮窗失败:', e);
     }
@@ -261,15 +338,16 @@ export class SightOverlayManager {
     // #ifdef APP-PLUS
     try {
       this.config = config;
-      console.log('更新悬浮窗配置:', config);
-      sightOverlayNative.update(
-        config.type,
-        config.color,
-        config.size,
-        config.thickness,
-        config.showDot,
-        config.opacity
-      );
+      if (!sightOverlayNative.updatePacked(packSightConfig(config))) {
+        sightOverlayNative.update(
+          config.type,
+          config.color,
+          config.size,
+          config.thickness,
+          config.showDot,
+          config.opacity
+        );
+      }
     } catch (e) {
       console.error('更新悬浮窗失败:', e);
     }